@@ -0,0 +1,101 @@
+package me.vivekanand.android_ocrsample
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.os.SystemClock
+import android.util.Log
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import me.vivekanand.ocrcore.ImagePayload
+import me.vivekanand.ocrcore.TextAccuracy
+import org.junit.After
+import org.junit.Assert.assertTrue
+import org.junit.Assume.assumeFalse
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.ByteArrayOutputStream
+
+/**
+ * Bytes on the wire versus recognition accuracy of [BudgetEncoder] on the bundled
+ * screenshots. Accuracy is measured against Cloud Vision's reading of the original file, so
+ * that part only runs with an API key saved in the app's prefs.
+ */
+@RunWith(AndroidJUnit4::class)
+class EncoderBudgetBenchmark {
+    private val context: Context = InstrumentationRegistry.getInstrumentation().targetContext
+    private lateinit var fixtures: List<Pair<String, Bitmap>>
+
+    @Before
+    fun setUp() {
+        BudgetEncoder.clear()
+        val options = BitmapFactory.Options().apply { inScaled = false }
+        fixtures = FIXTURES.map { (name, id) -> name to BitmapFactory.decodeResource(context.resources, id, options) }
+    }
+
+    @After
+    fun tearDown() {
+        fixtures.forEach { it.second.recycle() }
+    }
+
+    @Test
+    fun sizesLandUnderTheBudgetWhenReachable() {
+        for ((name, bitmap) in fixtures) {
+            val baseline = encoded(bitmap, 0)
+            for (budget in BUDGETS) {
+                val first = SystemClock.elapsedRealtimeNanos()
+                val bytes = encoded(bitmap, budget)
+                val searchMicros = (SystemClock.elapsedRealtimeNanos() - first) / 1_000
+                val repeat = SystemClock.elapsedRealtimeNanos()
+                encoded(bitmap, budget)
+                val memoMicros = (SystemClock.elapsedRealtimeNanos() - repeat) / 1_000
+                Log.i(TAG, "$name budget=${budget / 1024}K q90=${baseline.size / 1024}K -> ${bytes.size / 1024}K " +
+                    "search=${searchMicros}us repeat=${memoMicros}us")
+                // Budgets below what the lowest quality can reach still get the smallest encoding.
+                assertTrue("$name: ${bytes.size} > $budget", bytes.size <= budget || bytes.size < baseline.size)
+                BudgetEncoder.clear()
+            }
+        }
+    }
+
+    @Test
+    fun bytesVersusAccuracy() {
+        val apiKey = context.getSharedPreferences("ocr_prefs", Context.MODE_PRIVATE)
+            .getString("cloud_vision_api_key", null)
+        assumeFalse("No Cloud Vision key saved", apiKey.isNullOrBlank())
+        val client = CloudVisionClient()
+
+        for ((index, fixture) in fixtures.withIndex()) {
+            val (name, bitmap) = fixture
+            val original = context.resources.openRawResource(FIXTURES[index].second).use { it.readBytes() }
+            val reference = recognize(client, apiKey!!, original)
+            for (budget in listOf(0) + BUDGETS) {
+                val bytes = encoded(bitmap, budget)
+                val accuracy = TextAccuracy.characterAccuracy(reference, recognize(client, apiKey, bytes))
+                Log.i(TAG, "$name ${if (budget == 0) "q90" else "${budget / 1024}K"}: " +
+                    "${bytes.size / 1024}K on the wire (original ${original.size / 1024}K), accuracy %.4f".format(accuracy))
+                BudgetEncoder.clear()
+            }
+        }
+    }
+
+    private fun encoded(bitmap: Bitmap, budget: Int): ByteArray {
+        val out = ByteArrayOutputStream()
+        BudgetEncoder.encode(bitmap, out, budget)
+        return out.toByteArray()
+    }
+
+    private fun recognize(client: CloudVisionClient, apiKey: String, bytes: ByteArray): String =
+        client.annotate(apiKey, listOf(ImagePayload { it.write(bytes) })).single().text.orEmpty()
+
+    private companion object {
+        const val TAG = "EncoderBudget"
+        val BUDGETS = listOf(384 * 1024, 192 * 1024, 96 * 1024, 48 * 1024)
+        val FIXTURES = listOf(
+            "screenshoot_1" to R.drawable.screenshoot_1,
+            "screenshoot_2" to R.drawable.screenshoot_2,
+            "screenshoot_3" to R.drawable.screenshoot_3,
+        )
+    }
+}
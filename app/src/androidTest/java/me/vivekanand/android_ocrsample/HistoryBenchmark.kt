@@ -0,0 +1,83 @@
+package me.vivekanand.android_ocrsample
+
+import android.content.Context
+import android.os.SystemClock
+import android.util.Log
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import kotlin.random.Random
+
+/**
+ * Ingest and search cost of [OcrHistory] at 100k documents, in a scratch database. The
+ * documents are screenshot-like: a few lines drawn from a small UI vocabulary plus a unique
+ * order number, so common terms hit most rows and rare ones hit a handful.
+ */
+@RunWith(AndroidJUnit4::class)
+class HistoryBenchmark {
+    private val context: Context = InstrumentationRegistry.getInstrumentation().targetContext
+    private lateinit var history: OcrHistory
+
+    @Before
+    fun setUp() {
+        context.deleteDatabase(DB_NAME)
+        history = OcrHistory(context, DB_NAME)
+    }
+
+    @After
+    fun tearDown() {
+        history.close()
+        context.deleteDatabase(DB_NAME)
+    }
+
+    @Test
+    fun ingestAndSearch100k() {
+        val random = Random(42)
+        val ingestStart = SystemClock.elapsedRealtime()
+        repeat(DOCUMENTS) { i ->
+            val text = buildString {
+                repeat(6) {
+                    repeat(5) { append(VOCABULARY[random.nextInt(VOCABULARY.size)]).append(' ') }
+                    append('\n')
+                }
+                append("Order #").append(100_000 + i)
+            }
+            history.record(text, "/sdcard/Screenshots/s$i.png", "cloud_vision", 300L + i % 500)
+        }
+        history.flush()
+        val ingestMillis = SystemClock.elapsedRealtime() - ingestStart
+        assertEquals(DOCUMENTS.toLong(), history.count())
+        Log.i(TAG, "ingest: $DOCUMENTS docs in ${ingestMillis}ms")
+
+        for (query in listOf("battery", "wi-fi settings", "charg", "order 142857", "nomatchatall")) {
+            val samples = LongArray(ITERATIONS) {
+                val start = SystemClock.elapsedRealtimeNanos()
+                val page = history.search(query)
+                // Keyset paging: the second page costs the same as the first.
+                page.lastOrNull()?.let { history.search(query, beforeId = it.id) }
+                (SystemClock.elapsedRealtimeNanos() - start) / 1_000
+            }
+            val sorted = samples.drop(1).sorted()
+            val p95 = sorted[sorted.size * 95 / 100]
+            Log.i(TAG, "search '$query': p50=${sorted[sorted.size / 2]}us p95=${p95}us (two pages)")
+            assertTrue("search '$query' p95 ${p95}us", p95 < 2 * 50_000)
+        }
+    }
+
+    private companion object {
+        const val TAG = "HistoryBenchmark"
+        const val DB_NAME = "history_benchmark.db"
+        const val DOCUMENTS = 100_000
+        const val ITERATIONS = 41
+        val VOCABULARY = listOf(
+            "Battery", "Charging", "Wi-Fi", "Settings", "Bluetooth", "Display", "Sound", "Storage",
+            "Notifications", "Privacy", "Location", "Security", "Accounts", "Update", "Install",
+            "Cancel", "OK", "Send", "Reply", "Delete", "Archive", "Inbox", "Today", "Yesterday",
+        )
+    }
+}
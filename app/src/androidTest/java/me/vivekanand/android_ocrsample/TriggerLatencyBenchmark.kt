@@ -0,0 +1,103 @@
+package me.vivekanand.android_ocrsample
+
+import android.content.Context
+import android.content.Intent
+import android.graphics.Bitmap
+import android.graphics.Color
+import android.os.SystemClock
+import android.util.Log
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import org.junit.After
+import org.junit.Assert.assertNotNull
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.File
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+
+/**
+ * Trigger-to-broadcast latency of the ResultActivity + WorkManager path versus the direct
+ * OcrTriggerReceiver path. The result is pre-seeded in the cache, so only the trigger
+ * overhead is measured and no network or quota is used.
+ */
+@RunWith(AndroidJUnit4::class)
+class TriggerLatencyBenchmark {
+    private val context: Context = InstrumentationRegistry.getInstrumentation().targetContext
+    private val prefs = context.getSharedPreferences("ocr_prefs", Context.MODE_PRIVATE)
+    private val results = LinkedBlockingQueue<Long>()
+    private val listener = OcrResultListener { path, _ ->
+        if (path == image.absolutePath) results.add(SystemClock.elapsedRealtimeNanos())
+    }
+    private lateinit var image: File
+    private var savedKey: String? = null
+
+    @Before
+    fun setUp() {
+        savedKey = prefs.getString("cloud_vision_api_key", null)
+        if (savedKey == null) prefs.edit().putString("cloud_vision_api_key", "benchmark").commit()
+
+        image = File(context.cacheDir, "trigger_benchmark.jpg")
+        val bitmap = Bitmap.createBitmap(64, 64, Bitmap.Config.RGB_565).apply { eraseColor(Color.WHITE) }
+        image.outputStream().use { bitmap.compress(Bitmap.CompressFormat.JPEG, 90, it) }
+        val cache = OcrResultCache.get(context)
+        val params = OcrProcessor.cacheParams(BitmapDecoder.pixelBudget(context), OcrEngines.selected(context))
+        cache.put(cache.keyFor(image, params), "cached")
+
+        OcrResultBroadcaster.addListener(listener)
+    }
+
+    @After
+    fun tearDown() {
+        OcrResultBroadcaster.removeListener(listener)
+        if (savedKey == null) prefs.edit().remove("cloud_vision_api_key").commit()
+        image.delete()
+    }
+
+    @Test
+    fun activityAndWorkManagerPath() {
+        report("activity+workmanager") {
+            context.startActivity(
+                Intent(OcrProcessor.ACTION_OCR_PROCESS)
+                    .setPackage(context.packageName)
+                    .addFlags(Intent.FLAG_ACTIVITY_NEW_TASK)
+                    .putExtra(OcrProcessor.EXTRA_INPUT_PATHS, arrayOf(image.absolutePath))
+            )
+        }
+    }
+
+    @Test
+    fun directReceiverPath() {
+        report("receiver") {
+            context.sendBroadcast(
+                Intent(OcrProcessor.ACTION_OCR_PROCESS)
+                    .setPackage(context.packageName)
+                    .putExtra(OcrProcessor.EXTRA_INPUT_PATHS, arrayOf(image.absolutePath))
+            )
+        }
+    }
+
+    private fun report(name: String, trigger: () -> Unit) {
+        val samples = LongArray(ITERATIONS) {
+            results.clear()
+            val start = SystemClock.elapsedRealtimeNanos()
+            trigger()
+            val end = results.poll(10, TimeUnit.SECONDS)
+            assertNotNull("no result broadcast for $name", end)
+            SystemClock.sleep(200)
+            (end!! - start) / 1_000
+        }
+        // The first run pays for process-level warm up and is reported separately.
+        val sorted = samples.drop(1).sorted()
+        Log.i(
+            "TriggerLatency",
+            "$name: first=${samples[0]}us p50=${sorted[sorted.size / 2]}us " +
+                "p90=${sorted[sorted.size * 9 / 10]}us max=${sorted.last()}us"
+        )
+    }
+
+    private companion object {
+        const val ITERATIONS = 21
+    }
+}
@@ -0,0 +1,146 @@
+package me.vivekanand.android_ocrsample
+
+import android.content.Context
+import java.net.SocketTimeoutException
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlin.coroutines.coroutineContext
+import me.vivekanand.ocrcore.AnnotateRequestBody
+import me.vivekanand.ocrcore.AnnotateResult
+import me.vivekanand.ocrcore.ImagePayload
+
+/**
+ * Packs images submitted close together into one images:annotate call. A batch is sent as
+ * soon as it holds [maxBatchSize] images, or [lingerMillis] after its first image arrived.
+ * It is also sent early rather than let its estimated body outgrow [maxRequestBytes].
+ * Each caller gets back the response at its own index.
+ */
+class AnnotateBatcher(
+    private val maxBatchSize: Int,
+    private val lingerMillis: Long,
+    private val scope: CoroutineScope,
+    private val maxRequestBytes: Long = AnnotateRequestBody.MAX_REQUEST_BYTES,
+    private val send: suspend (List<ImagePayload>) -> List<AnnotateResult>,
+) {
+    private class Pending(val image: ImagePayload, val result: CompletableDeferred<AnnotateResult>)
+
+    private val mutex = Mutex()
+    private var pending = ArrayList<Pending>()
+    private var pendingBytes = 0L
+    private var lingerJob: Job? = null
+
+    suspend fun submit(image: ImagePayload): AnnotateResult {
+        val item = Pending(image, CompletableDeferred())
+        val bytes = AnnotateRequestBody.encodedSize(image.sizeHint().takeIf { it >= 0 } ?: UNKNOWN_IMAGE_BYTES)
+        var overflow: List<Pending>? = null
+        val full = mutex.withLock {
+            if (pending.isNotEmpty() && pendingBytes + bytes > maxRequestBytes) {
+                lingerJob?.cancel()
+                lingerJob = null
+                overflow = takeAll()
+            }
+            pending.add(item)
+            pendingBytes += bytes
+            if (pending.size >= maxBatchSize || pendingBytes >= maxRequestBytes) {
+                lingerJob?.cancel()
+                lingerJob = null
+                takeAll()
+            } else {
+                if (lingerJob == null) lingerJob = scope.launch { flushAfterLinger() }
+                null
+            }
+        }
+        overflow?.let { dispatch(it) }
+        full?.let { dispatch(it) }
+        return item.result.await()
+    }
+
+    private suspend fun flushAfterLinger() {
+        delay(lingerMillis)
+        val self = coroutineContext[Job]
+        val batch = mutex.withLock {
+            if (lingerJob === self) lingerJob = null
+            takeAll()
+        }
+        if (batch.isNotEmpty()) dispatch(batch)
+    }
+
+    private fun takeAll(): List<Pending> {
+        val batch = pending
+        pending = ArrayList()
+        pendingBytes = 0
+        return batch
+    }
+
+    private fun dispatch(batch: List<Pending>) {
+        scope.launch {
+            try {
+                val results = send(batch.map { it.image })
+                batch.forEachIndexed { index, item ->
+                    item.result.complete(results.getOrElse(index) { AnnotateResult(null, "Missing response") })
+                }
+            } catch (e: Throwable) {
+                if (batch.size > 1 && isPerImageFailure(e)) {
+                    batch.forEach { dispatchAlone(it) }
+                } else {
+                    batch.forEach { it.result.completeExceptionally(e) }
+                }
+            }
+        }
+    }
+
+    // One unreadable image fails the whole request; the others shouldn't pay for it.
+    private fun dispatchAlone(item: Pending) {
+        scope.launch {
+            try {
+                item.result.complete(send(listOf(item.image)).firstOrNull() ?: AnnotateResult(null, "Missing response"))
+            } catch (e: Throwable) {
+                item.result.completeExceptionally(e)
+            }
+        }
+    }
+
+    // Timeouts, throttling and server errors would fail each image alike, so they are not split.
+    private fun isPerImageFailure(e: Throwable): Boolean = when (e) {
+        is CancellationException, is SocketTimeoutException, is LoadShedException -> false
+        is VisionHttpException -> e.code != 429 && e.code < 500
+        else -> true
+    }
+
+    companion object {
+        // images:annotate accepts at most 16 images per request.
+        const val MAX_IMAGES_PER_REQUEST = 16
+        // No added wait by default: a lone trigger goes out at once, and images submitted
+        // together still share a call because the flush runs after they are queued.
+        const val DEFAULT_LINGER_MILLIS = 0L
+        // Assumed for payloads that can't tell their size up front: a q90 JPEG of a budget-sized frame.
+        const val UNKNOWN_IMAGE_BYTES = 1L * 1024 * 1024
+
+        @Volatile
+        private var instance: AnnotateBatcher? = null
+
+        fun get(context: Context): AnnotateBatcher = instance ?: synchronized(this) {
+            instance ?: create(context.applicationContext).also { instance = it }
+        }
+
+        private fun create(context: Context): AnnotateBatcher {
+            val prefs = context.getSharedPreferences("ocr_prefs", Context.MODE_PRIVATE)
+            val maxBatchSize = prefs.getInt("batch_max_size", MAX_IMAGES_PER_REQUEST)
+                .coerceIn(1, MAX_IMAGES_PER_REQUEST)
+            val lingerMillis = prefs.getLong("batch_linger_ms", DEFAULT_LINGER_MILLIS)
+            val client = CloudVisionClient(wordBoxes = prefs.getBoolean("result_word_boxes", false))
+            return AnnotateBatcher(maxBatchSize, lingerMillis, CoroutineScope(SupervisorJob() + Dispatchers.IO)) { images ->
+                val apiKey = prefs.getString("cloud_vision_api_key", null).orEmpty()
+                client.annotateHedgedSuspending(apiKey, images)
+            }
+        }
+    }
+}
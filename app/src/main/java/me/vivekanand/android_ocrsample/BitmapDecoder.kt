@@ -0,0 +1,185 @@
+package me.vivekanand.android_ocrsample
+
+import android.content.ContentResolver
+import android.content.Context
+import android.graphics.Bitmap
+import android.graphics.BitmapFactory
+import android.graphics.BitmapRegionDecoder
+import android.graphics.Matrix
+import android.graphics.Rect
+import android.net.Uri
+import android.os.Build
+import java.io.File
+import java.io.FileInputStream
+import java.io.IOException
+import java.io.InputStream
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicInteger
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.asCoroutineDispatcher
+import me.vivekanand.ocrcore.ImageProbe
+import me.vivekanand.ocrcore.PixelRect
+import okio.buffer
+import okio.source
+
+/**
+ * Shared decode stage: reads the bounds first, then decodes with the largest power-of-two
+ * sample size that keeps the image within a pixel budget. Without colour the decode goes
+ * straight to RGB_565, which halves the heap and compress cost. That is fine for text.
+ * Decodes land in memory from [BitmapPool] whenever a bitmap that fits is available.
+ * Whole-image decodes are turned upright by their EXIF orientation; regions stay in stored
+ * pixel order, the coordinates [BitmapRegionDecoder] works in.
+ */
+object BitmapDecoder {
+    // ~3 MP: 2048x1536 keeps body text comfortably legible for Cloud Vision TEXT_DETECTION.
+    const val DEFAULT_PIXEL_BUDGET = 2048 * 1536
+
+    private val threadCount = AtomicInteger()
+
+    /** Decode threads, so multi-MB decodes stay off the main thread and out of the IO pool. */
+    @JvmField
+    val executor: ExecutorService = Executors.newFixedThreadPool(2) { runnable ->
+        Thread(runnable, "bitmap-decode-${threadCount.incrementAndGet()}")
+    }
+
+    val dispatcher: CoroutineDispatcher = executor.asCoroutineDispatcher()
+
+    // A zero or negative pref would never be met; treat it as unset.
+    @JvmStatic
+    fun pixelBudget(context: Context): Int =
+        context.getSharedPreferences("ocr_prefs", Context.MODE_PRIVATE)
+            .getInt("decode_pixel_budget", DEFAULT_PIXEL_BUDGET)
+            .takeIf { it > 0 } ?: DEFAULT_PIXEL_BUDGET
+
+    @JvmStatic
+    fun decodeFile(path: String, pixelBudget: Int, needsColor: Boolean): Bitmap? {
+        val file = File(path)
+        if (!file.exists()) return null
+        return decode(pixelBudget, needsColor) { FileInputStream(file) }
+    }
+
+    @JvmStatic
+    fun isDecodable(path: String): Boolean {
+        val bounds = BitmapFactory.Options().apply { inJustDecodeBounds = true }
+        BitmapFactory.decodeFile(path, bounds)
+        return bounds.outWidth > 0 && bounds.outHeight > 0
+    }
+
+    @JvmStatic
+    @Throws(IOException::class)
+    fun decodeUri(resolver: ContentResolver, uri: Uri, pixelBudget: Int, needsColor: Boolean): Bitmap? =
+        decode(pixelBudget, needsColor) { resolver.openInputStream(uri) }
+
+    private fun decode(pixelBudget: Int, needsColor: Boolean, open: () -> InputStream?): Bitmap? {
+        val bounds = BitmapFactory.Options().apply { inJustDecodeBounds = true }
+        // A bounds-only decode always returns null; only a missing stream means unreadable.
+        // BitmapFactory ignores EXIF, so the same pass probes the orientation.
+        val stream = open() ?: return null
+        val orientation = stream.source().buffer().use { source ->
+            val header = ImageProbe.probe(source.peek())
+            BitmapFactory.decodeStream(source.inputStream(), null, bounds)
+            header?.orientation ?: 1
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) return null
+
+        val sampleSize = calculateSampleSize(bounds.outWidth, bounds.outHeight, pixelBudget)
+        val config = if (needsColor) Bitmap.Config.ARGB_8888 else Bitmap.Config.RGB_565
+        val options = pooledOptions(
+            sampled(bounds.outWidth, sampleSize), sampled(bounds.outHeight, sampleSize), sampleSize, config
+        )
+        val bitmap = decodePooled(options) { open()?.use { BitmapFactory.decodeStream(it, null, options) } }
+        return bitmap?.let { upright(it, orientation) }
+    }
+
+    /** EXIF orientation of [path], 1 when it has none or can't be read. */
+    @JvmStatic
+    fun orientationOf(path: String): Int = try {
+        File(path).source().buffer().use { ImageProbe.probe(it)?.orientation } ?: 1
+    } catch (e: IOException) {
+        1
+    }
+
+    /**
+     * Turns a bitmap decoded in stored pixel order upright for EXIF [orientation]. A
+     * re-encoded upload carries no EXIF, so a rotated camera JPEG would otherwise reach
+     * Cloud Vision sideways while its pass-through twin keeps the tag.
+     */
+    internal fun upright(bitmap: Bitmap, orientation: Int): Bitmap {
+        val matrix = Matrix()
+        when (orientation) {
+            2 -> matrix.setScale(-1f, 1f)
+            3 -> matrix.setRotate(180f)
+            4 -> matrix.apply { setRotate(180f); postScale(-1f, 1f) }
+            5 -> matrix.apply { setRotate(90f); postScale(-1f, 1f) }
+            6 -> matrix.setRotate(90f)
+            7 -> matrix.apply { setRotate(-90f); postScale(-1f, 1f) }
+            8 -> matrix.setRotate(-90f)
+            else -> return bitmap
+        }
+        val turned = Bitmap.createBitmap(bitmap, 0, 0, bitmap.width, bitmap.height, matrix, true)
+        if (turned !== bitmap) BitmapPool.put(bitmap)
+        return turned
+    }
+
+    private fun pooledOptions(width: Int, height: Int, sampleSize: Int, config: Bitmap.Config) =
+        BitmapFactory.Options().apply {
+            inSampleSize = sampleSize
+            inPreferredConfig = config
+            inMutable = true
+            inBitmap = BitmapPool.get(width, height, config)
+        }
+
+    // ImageDecoder has no way to decode into an existing bitmap, so BitmapFactory stays the
+    // decoder on every API level.
+    private fun decodePooled(options: BitmapFactory.Options, decode: () -> Bitmap?): Bitmap? {
+        val reuse = options.inBitmap
+        val bitmap = try {
+            decode()
+        } catch (e: IllegalArgumentException) {
+            // The decoder rejected the pooled bitmap; fall back to a fresh allocation.
+            if (reuse == null) throw e
+            options.inBitmap = null
+            decode()
+        }
+        if (reuse != null && bitmap !== reuse) BitmapPool.put(reuse)
+        return bitmap
+    }
+
+    // JPEG downsampling rounds up, so size the reuse candidate for the larger result.
+    internal fun sampled(dimension: Int, sampleSize: Int): Int = (dimension + sampleSize - 1) / sampleSize
+
+    @JvmStatic
+    fun newRegionDecoder(path: String): BitmapRegionDecoder? = try {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            BitmapRegionDecoder.newInstance(path)
+        } else {
+            @Suppress("DEPRECATION")
+            BitmapRegionDecoder.newInstance(path, false)
+        }
+    } catch (e: IOException) {
+        null
+    }
+
+    // Only the pixels of [rect] are decoded; the budget applies to the region, not the image.
+    @JvmStatic
+    fun decodeRegion(decoder: BitmapRegionDecoder, rect: PixelRect, pixelBudget: Int): Bitmap? {
+        val sampleSize = calculateSampleSize(rect.width, rect.height, pixelBudget)
+        val options = pooledOptions(
+            sampled(rect.width, sampleSize), sampled(rect.height, sampleSize), sampleSize, Bitmap.Config.RGB_565
+        )
+        return decodePooled(options) {
+            decoder.decodeRegion(Rect(rect.left, rect.top, rect.right, rect.bottom), options)
+        }
+    }
+
+    @JvmStatic
+    fun calculateSampleSize(width: Int, height: Int, pixelBudget: Int): Int {
+        val budget = pixelBudget.coerceAtLeast(1)
+        var sampleSize = 1
+        while ((width / sampleSize).toLong() * (height / sampleSize) > budget) {
+            sampleSize *= 2
+        }
+        return sampleSize
+    }
+}
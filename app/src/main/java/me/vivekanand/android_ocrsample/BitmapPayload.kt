@@ -0,0 +1,96 @@
+package me.vivekanand.android_ocrsample
+
+import android.graphics.Bitmap
+import android.graphics.BitmapRegionDecoder
+import java.io.IOException
+import java.io.OutputStream
+import me.vivekanand.ocrcore.ImagePayload
+import me.vivekanand.ocrcore.PixelRect
+
+class BitmapPayload @JvmOverloads constructor(
+    private val bitmap: Bitmap,
+    private val targetBytes: Int = BudgetEncoder.targetBytes,
+) : ImagePayload {
+    override fun writeTo(out: OutputStream) {
+        OcrMetrics.time(OcrMetrics.Stage.ENCODE) {
+            BudgetEncoder.encode(bitmap, out, targetBytes)
+        }
+    }
+
+    override fun sizeHint(): Long = encodedHint(targetBytes)
+}
+
+/** Decodes [path] only while the body is being written, so a batch holds one bitmap at a time. */
+class FileBitmapPayload @JvmOverloads constructor(
+    private val path: String,
+    private val pixelBudget: Int,
+    private val targetBytes: Int = BudgetEncoder.targetBytes,
+) : ImagePayload {
+    override fun writeTo(out: OutputStream) {
+        val bitmap = OcrMetrics.time(OcrMetrics.Stage.DECODE) {
+            BitmapDecoder.decodeFile(path, pixelBudget, needsColor = false)
+        } ?: throw IOException("Unreadable image: $path")
+        try {
+            OcrMetrics.time(OcrMetrics.Stage.ENCODE) {
+                BudgetEncoder.encode(bitmap, out, targetBytes)
+            }
+        } finally {
+            BitmapPool.put(bitmap)
+        }
+    }
+
+    override fun sizeHint(): Long = encodedHint(targetBytes)
+}
+
+/**
+ * A region decoder shared by the owner and every [RegionPayload] cut from it. The owner
+ * holds the first reference and calls [release] when done. The decoder is recycled only
+ * once no payload is still writing, e.g. a losing hedge on an OkHttp thread.
+ */
+class SharedRegionDecoder(val decoder: BitmapRegionDecoder) {
+    private var refs = 1
+
+    /** False once the decoder has been recycled. */
+    @Synchronized
+    fun retain(): Boolean {
+        if (refs == 0) return false
+        refs++
+        return true
+    }
+
+    @Synchronized
+    fun release() {
+        if (refs > 0 && --refs == 0) decoder.recycle()
+    }
+}
+
+/** Decodes only [rect] of the image; [shared] is used by all regions of one image. */
+class RegionPayload @JvmOverloads constructor(
+    private val shared: SharedRegionDecoder,
+    private val rect: PixelRect,
+    private val pixelBudget: Int,
+    private val targetBytes: Int = BudgetEncoder.targetBytes,
+) : ImagePayload {
+    override fun writeTo(out: OutputStream) {
+        if (!shared.retain()) throw IOException("Region decoder already released")
+        val bitmap = try {
+            OcrMetrics.time(OcrMetrics.Stage.DECODE) {
+                BitmapDecoder.decodeRegion(shared.decoder, rect, pixelBudget)
+            }
+        } finally {
+            shared.release()
+        } ?: throw IOException("Unreadable region $rect")
+        try {
+            OcrMetrics.time(OcrMetrics.Stage.ENCODE) {
+                BudgetEncoder.encode(bitmap, out, targetBytes)
+            }
+        } finally {
+            BitmapPool.put(bitmap)
+        }
+    }
+
+    override fun sizeHint(): Long = encodedHint(targetBytes)
+}
+
+// Re-encoded payloads land near the budget; without one the size is only known afterwards.
+private fun encodedHint(targetBytes: Int): Long = if (targetBytes > 0) targetBytes.toLong() else -1
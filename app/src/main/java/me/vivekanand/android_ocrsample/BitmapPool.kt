@@ -0,0 +1,80 @@
+package me.vivekanand.android_ocrsample
+
+import android.graphics.Bitmap
+import java.util.TreeMap
+
+/**
+ * Recycled decode targets for [BitmapDecoder]. Bitmaps are bucketed by the power of two above
+ * their allocation size, and [get] only looks in the bucket that fits the request and the one
+ * above it. A request never pins memory more than about four times its own size. The pool
+ * holds at most [maxBytes]; the largest bitmaps are evicted first.
+ */
+object BitmapPool {
+    private val maxBytes: Long = minOf(Runtime.getRuntime().maxMemory() / 8, 32L * 1024 * 1024)
+    private val buckets = TreeMap<Int, ArrayDeque<Bitmap>>()
+    private var pooledBytes = 0L
+
+    @JvmStatic
+    var hits = 0L
+        private set
+
+    @JvmStatic
+    var misses = 0L
+        private set
+
+    /** A mutable bitmap whose allocation can hold [width] x [height] in [config], or null. */
+    @JvmStatic
+    @Synchronized
+    fun get(width: Int, height: Int, config: Bitmap.Config): Bitmap? {
+        val needed = byteCount(width, height, config)
+        val bucket = bucketOf(needed)
+        for (candidates in buckets.subMap(bucket, true, bucket + 1, true).values) {
+            val iterator = candidates.iterator()
+            while (iterator.hasNext()) {
+                val bitmap = iterator.next()
+                if (bitmap.allocationByteCount >= needed) {
+                    iterator.remove()
+                    pooledBytes -= bitmap.allocationByteCount
+                    hits++
+                    return bitmap
+                }
+            }
+        }
+        misses++
+        return null
+    }
+
+    /** Hands a bitmap back for reuse. Use this instead of [Bitmap.recycle] for decoder output. */
+    @JvmStatic
+    @Synchronized
+    fun put(bitmap: Bitmap) {
+        if (bitmap.isRecycled) return
+        val size = bitmap.allocationByteCount
+        if (!bitmap.isMutable || size > maxBytes) {
+            bitmap.recycle()
+            return
+        }
+        buckets.getOrPut(bucketOf(size.toLong())) { ArrayDeque() }.addLast(bitmap)
+        pooledBytes += size
+        while (pooledBytes > maxBytes) {
+            val largest = buckets.lastEntry() ?: break
+            val evicted = largest.value.removeFirst()
+            if (largest.value.isEmpty()) buckets.remove(largest.key)
+            pooledBytes -= evicted.allocationByteCount
+            evicted.recycle()
+        }
+    }
+
+    @JvmStatic
+    @Synchronized
+    fun clear() {
+        buckets.values.forEach { bitmaps -> bitmaps.forEach { it.recycle() } }
+        buckets.clear()
+        pooledBytes = 0
+    }
+
+    internal fun byteCount(width: Int, height: Int, config: Bitmap.Config): Long =
+        width.toLong() * height * if (config == Bitmap.Config.RGB_565) 2 else 4
+
+    internal fun bucketOf(bytes: Long): Int = 64 - java.lang.Long.numberOfLeadingZeros(maxOf(bytes - 1, 0))
+}
@@ -0,0 +1,85 @@
+package me.vivekanand.android_ocrsample
+
+import android.graphics.Bitmap
+import android.os.Build
+import java.io.ByteArrayOutputStream
+import java.io.OutputStream
+import java.util.concurrent.ConcurrentHashMap
+import me.vivekanand.ocrcore.QualitySearch
+
+/**
+ * Encodes upload bitmaps to land just under [targetBytes] instead of at a fixed JPEG quality.
+ * JPEG quality is binary-searched; if even the lowest quality is too large, lossy WEBP is tried
+ * (API 30+). The settings that fit are remembered per resolution, so the next screenshot of
+ * the same size usually costs a single encode.
+ */
+object BudgetEncoder {
+    const val DEFAULT_TARGET_BYTES = 256 * 1024
+
+    /** Set from the `upload_target_bytes` pref at startup; 0 or less keeps fixed quality 90. */
+    @Volatile
+    var targetBytes: Int = DEFAULT_TARGET_BYTES
+
+    enum class Format { JPEG, WEBP }
+
+    data class Settings(val format: Format, val quality: Int)
+
+    private const val MAX_MEMO = 16
+    private val qualitySearch = QualitySearch(minQuality = 40, maxQuality = 92)
+    private val memo = ConcurrentHashMap<String, Settings>()
+
+    // Attempts reuse one growable buffer per encoding thread.
+    private val buffers = ThreadLocal.withInitial { Buffer() }
+
+    private class Buffer : ByteArrayOutputStream(256 * 1024) {
+        fun writeTo(out: OutputStream, length: Int) = out.write(buf, 0, length)
+    }
+
+    fun encode(bitmap: Bitmap, out: OutputStream, target: Int = targetBytes): Settings {
+        if (target <= 0) {
+            compress(bitmap, Format.JPEG, 90, out)
+            return Settings(Format.JPEG, 90)
+        }
+        val key = "${bitmap.width}x${bitmap.height}"
+        val buffer = buffers.get()!!
+        val remembered = memo[key]
+
+        var format = if (remembered?.format == Format.WEBP && webpSupported()) Format.WEBP else Format.JPEG
+        var choice = searchQuality(bitmap, buffer, format, target, remembered)
+        if (!choice.fits && format == Format.JPEG && webpSupported()) {
+            format = Format.WEBP
+            choice = searchQuality(bitmap, buffer, format, target, remembered)
+        }
+        val settings = Settings(format, choice.quality)
+
+        if (memo.size >= MAX_MEMO && key !in memo) memo.clear()
+        memo[key] = settings
+        buffer.writeTo(out, buffer.size())
+        // Don't pin an outsized buffer to a pool thread.
+        if (buffer.size() > 2 * target) buffers.remove()
+        return settings
+    }
+
+    private fun searchQuality(bitmap: Bitmap, buffer: Buffer, format: Format, target: Int, remembered: Settings?) =
+        qualitySearch.search(target, remembered?.takeIf { it.format == format }?.quality) { quality ->
+            buffer.reset()
+            compress(bitmap, format, quality, buffer)
+            buffer.size()
+        }
+
+    fun clear() {
+        memo.clear()
+    }
+
+    private fun webpSupported() = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+
+    @Suppress("DEPRECATION")
+    private fun compress(bitmap: Bitmap, format: Format, quality: Int, out: OutputStream) {
+        val compressFormat = when {
+            format == Format.JPEG -> Bitmap.CompressFormat.JPEG
+            Build.VERSION.SDK_INT >= Build.VERSION_CODES.R -> Bitmap.CompressFormat.WEBP_LOSSY
+            else -> Bitmap.CompressFormat.WEBP
+        }
+        bitmap.compress(compressFormat, quality, out)
+    }
+}
@@ -0,0 +1,170 @@
+package me.vivekanand.android_ocrsample
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.net.Uri
+import android.provider.DocumentsContract
+import android.util.Log
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import me.vivekanand.ocrcore.ImagePayload
+
+/**
+ * Runs one [BulkPipeline] import at a time for a multi-select or a whole folder. Every result
+ * goes into [OcrHistory]. The run lives in a process-wide scope, so a recreated activity can
+ * [attach] to it again.
+ */
+object BulkImport {
+    private const val TAG = "BulkImport"
+    private const val TIMEOUT_MS = 30_000L
+
+    interface Listener {
+        fun onProgress(progress: BulkPipeline.Progress)
+        fun onFinished(report: BulkPipeline.Report?)
+    }
+
+    /** Either the original bytes (pass-through) or a decoded bitmap to re-encode. */
+    private class Decoded(val original: ImagePayload?, val bitmap: Bitmap?)
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+    private var job: Job? = null
+
+    @Volatile
+    private var listener: Listener? = null
+
+    @JvmStatic
+    val isRunning: Boolean get() = job?.isActive == true
+
+    @JvmStatic
+    fun attach(listener: Listener) {
+        this.listener = listener
+    }
+
+    @JvmStatic
+    fun detach(listener: Listener) {
+        if (this.listener === listener) this.listener = null
+    }
+
+    /** Starts importing [uris]; returns false when no API key is set or an import is running. */
+    @JvmStatic
+    fun start(context: Context, uris: List<Uri>, listener: Listener): Boolean =
+        launch(context, listener) { uris }
+
+    /** Imports every image directly inside the folder picked with ACTION_OPEN_DOCUMENT_TREE. */
+    @JvmStatic
+    fun startFolder(context: Context, treeUri: Uri, listener: Listener): Boolean =
+        launch(context, listener) { imagesInTree(context, treeUri) }
+
+    @JvmStatic
+    fun cancel() {
+        job?.cancel()
+    }
+
+    @Synchronized
+    private fun launch(context: Context, listener: Listener, sources: () -> List<Uri>): Boolean {
+        if (isRunning) return false
+        val appContext = context.applicationContext
+        val prefs = appContext.getSharedPreferences("ocr_prefs", Context.MODE_PRIVATE)
+        val apiKey = prefs.getString("cloud_vision_api_key", null)
+        if (apiKey.isNullOrBlank()) return false
+        val uploadConcurrency = prefs.getInt("bulk_upload_concurrency", 4).coerceAtLeast(1)
+        this.listener = listener
+
+        job = scope.launch {
+            var report: BulkPipeline.Report? = null
+            try {
+                report = pipeline(appContext, apiKey, uploadConcurrency).run(
+                    sources(),
+                    onProgress = { this@BulkImport.listener?.onProgress(it) },
+                ) { result ->
+                    val text = result.text
+                    if (text != null) {
+                        OcrHistory.get(appContext).record(
+                            text, result.source.toString(), OcrEngines.Kind.CLOUD_VISION.prefValue,
+                            result.elapsedNanos / 1_000_000
+                        )
+                    } else if (result.error != null) {
+                        Log.w(TAG, "Import failed for ${result.source}: ${result.error.message}")
+                    }
+                }
+                Log.i(TAG, report.toString())
+            } catch (e: CancellationException) {
+                throw e
+            } catch (e: Exception) {
+                Log.e(TAG, "Import aborted", e)
+            } finally {
+                this@BulkImport.listener?.onFinished(report)
+                this@BulkImport.listener = null
+            }
+        }
+        return true
+    }
+
+    private fun pipeline(context: Context, apiKey: String, uploadConcurrency: Int): BulkPipeline<Uri, Decoded> {
+        val resolver = context.contentResolver
+        val pixelBudget = BitmapDecoder.pixelBudget(context)
+        val client = CloudVisionClient(RequestScheduler.Priority.BULK)
+        return BulkPipeline(
+            uploadConcurrency = uploadConcurrency,
+            decode = { uri ->
+                val original = ImagePayloads.passThrough(resolver, uri, pixelBudget)
+                if (original != null) {
+                    Decoded(original, null)
+                } else {
+                    val bitmap = OcrMetrics.time(OcrMetrics.Stage.DECODE) {
+                        BitmapDecoder.decodeUri(resolver, uri, pixelBudget, needsColor = false)
+                    } ?: throw IOException("Unreadable image: $uri")
+                    Decoded(null, bitmap)
+                }
+            },
+            encode = { decoded ->
+                val out = ByteArrayOutputStream()
+                val bitmap = decoded.bitmap
+                if (bitmap != null) {
+                    try {
+                        OcrMetrics.time(OcrMetrics.Stage.ENCODE) {
+                            BudgetEncoder.encode(bitmap, out)
+                        }
+                    } finally {
+                        BitmapPool.put(bitmap)
+                    }
+                } else {
+                    decoded.original!!.writeTo(out)
+                }
+                out.toByteArray()
+            },
+            upload = { jpeg ->
+                client.annotateSuspending(apiKey, listOf(ImagePayload { it.write(jpeg) }), TIMEOUT_MS).firstOrNull()?.text
+            },
+        )
+    }
+
+    /** Image documents directly inside a tree picked with ACTION_OPEN_DOCUMENT_TREE, by name. */
+    @JvmStatic
+    fun imagesInTree(context: Context, treeUri: Uri): List<Uri> {
+        val children = DocumentsContract.buildChildDocumentsUriUsingTree(
+            treeUri, DocumentsContract.getTreeDocumentId(treeUri)
+        )
+        val projection = arrayOf(
+            DocumentsContract.Document.COLUMN_DOCUMENT_ID,
+            DocumentsContract.Document.COLUMN_MIME_TYPE,
+            DocumentsContract.Document.COLUMN_DISPLAY_NAME,
+        )
+        val images = ArrayList<Pair<String, Uri>>()
+        context.contentResolver.query(children, projection, null, null, null)?.use { cursor ->
+            while (cursor.moveToNext()) {
+                val mime = cursor.getString(1) ?: continue
+                if (!mime.startsWith("image/")) continue
+                val uri = DocumentsContract.buildDocumentUriUsingTree(treeUri, cursor.getString(0))
+                images += (cursor.getString(2) ?: "") to uri
+            }
+        }
+        return images.sortedBy { it.first }.map { it.second }
+    }
+}
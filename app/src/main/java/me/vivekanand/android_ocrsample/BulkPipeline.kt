@@ -0,0 +1,163 @@
+package me.vivekanand.android_ocrsample
+
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.channels.ReceiveChannel
+import kotlinx.coroutines.channels.SendChannel
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.joinAll
+import kotlinx.coroutines.launch
+import java.util.Locale
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Staged bulk OCR: decode -> encode -> upload, connected by channels of [queueCapacity]
+ * items. Decode and encode each run on [cpuWorkers] coroutines on [cpuDispatcher]; uploads
+ * are capped at [uploadConcurrency]. The bounded queues keep a slow stage from piling up
+ * decoded bitmaps behind it. Upload includes the response parse, which streams off the socket.
+ *
+ * A failed item is reported through `onResult` and the rest carry on. Cancelling the calling
+ * coroutine stops every stage.
+ */
+class BulkPipeline<S, D>(
+    private val cpuWorkers: Int = Runtime.getRuntime().availableProcessors().coerceIn(1, 4),
+    private val uploadConcurrency: Int = 4,
+    private val queueCapacity: Int = cpuWorkers,
+    private val cpuDispatcher: CoroutineDispatcher = Dispatchers.Default,
+    private val ioDispatcher: CoroutineDispatcher = Dispatchers.IO,
+    private val decode: suspend (S) -> D,
+    private val encode: suspend (D) -> ByteArray,
+    private val upload: suspend (ByteArray) -> String?,
+) {
+    enum class Stage { DECODE, ENCODE, UPLOAD }
+
+    data class Progress(val total: Int, val decoded: Int, val encoded: Int, val completed: Int, val failed: Int)
+
+    class ItemResult<S>(val index: Int, val source: S, val text: String?, val error: Throwable?, val elapsedNanos: Long)
+
+    class Report(
+        val total: Int,
+        val succeeded: Int,
+        val failed: Int,
+        val elapsedNanos: Long,
+        val bytesUploaded: Long,
+        /** Summed busy time of each stage's workers. */
+        val busyNanos: Map<Stage, Long>,
+    ) {
+        val imagesPerSecond: Double get() = if (elapsedNanos == 0L) 0.0 else succeeded * 1e9 / elapsedNanos
+
+        override fun toString(): String = String.format(
+            Locale.US,
+            "%d images (%d ok, %d failed) in %.1f s: %.2f img/s, %.1f MB uploaded; busy decode %.1f s, encode %.1f s, upload %.1f s",
+            total, succeeded, failed, elapsedNanos / 1e9, imagesPerSecond, bytesUploaded / 1e6,
+            busyNanos.getValue(Stage.DECODE) / 1e9, busyNanos.getValue(Stage.ENCODE) / 1e9,
+            busyNanos.getValue(Stage.UPLOAD) / 1e9,
+        )
+    }
+
+    private class Item<S, D>(val index: Int, val source: S) {
+        val startNanos = System.nanoTime()
+        var decoded: D? = null
+        var encoded: ByteArray? = null
+    }
+
+    private inner class Run(val total: Int, val onProgress: (Progress) -> Unit, val onResult: (ItemResult<S>) -> Unit) {
+        val decoded = AtomicInteger()
+        val encoded = AtomicInteger()
+        val completed = AtomicInteger()
+        val failed = AtomicInteger()
+        val bytes = AtomicLong()
+        val busy = Stage.entries.associateWith { AtomicLong() }
+
+        fun progress() = onProgress(Progress(total, decoded.get(), encoded.get(), completed.get(), failed.get()))
+
+        fun finish(item: Item<S, D>, text: String?, error: Throwable?) {
+            if (error == null) completed.incrementAndGet() else failed.incrementAndGet()
+            onResult(ItemResult(item.index, item.source, text, error, System.nanoTime() - item.startNanos))
+            progress()
+        }
+    }
+
+    suspend fun run(
+        sources: List<S>,
+        onProgress: (Progress) -> Unit = {},
+        onResult: (ItemResult<S>) -> Unit,
+    ): Report {
+        val start = System.nanoTime()
+        val run = Run(sources.size, onProgress, onResult)
+        coroutineScope {
+            val pending = Channel<Item<S, D>>(queueCapacity)
+            val decoded = Channel<Item<S, D>>(queueCapacity)
+            val encoded = Channel<Item<S, D>>(queueCapacity)
+            launch {
+                sources.forEachIndexed { index, source -> pending.send(Item(index, source)) }
+                pending.close()
+            }
+            val decoders = stage(cpuWorkers, cpuDispatcher, Stage.DECODE, pending, decoded, run) { item ->
+                item.decoded = decode(item.source)
+                run.decoded.incrementAndGet()
+            }
+            val encoders = stage(cpuWorkers, cpuDispatcher, Stage.ENCODE, decoded, encoded, run) { item ->
+                @Suppress("UNCHECKED_CAST")
+                val bytes = encode(item.decoded as D)
+                item.decoded = null
+                item.encoded = bytes
+                run.encoded.incrementAndGet()
+            }
+            val uploaders = stage(uploadConcurrency, ioDispatcher, Stage.UPLOAD, encoded, null, run) { item ->
+                val bytes = item.encoded!!
+                item.encoded = null
+                val text = upload(bytes)
+                run.bytes.addAndGet(bytes.size.toLong())
+                run.finish(item, text, null)
+            }
+            launch { decoders.joinAll(); decoded.close() }
+            launch { encoders.joinAll(); encoded.close() }
+            uploaders.joinAll()
+        }
+        return Report(
+            total = sources.size,
+            succeeded = run.completed.get(),
+            failed = run.failed.get(),
+            elapsedNanos = System.nanoTime() - start,
+            bytesUploaded = run.bytes.get(),
+            busyNanos = run.busy.mapValues { it.value.get() },
+        )
+    }
+
+    private fun CoroutineScope.stage(
+        workers: Int,
+        dispatcher: CoroutineDispatcher,
+        stage: Stage,
+        input: ReceiveChannel<Item<S, D>>,
+        output: SendChannel<Item<S, D>>?,
+        run: Run,
+        work: suspend (Item<S, D>) -> Unit,
+    ): List<Job> = List(workers) {
+        launch(dispatcher) {
+            for (item in input) {
+                val started = System.nanoTime()
+                val ok = try {
+                    work(item)
+                    true
+                } catch (e: CancellationException) {
+                    throw e
+                } catch (e: Exception) {
+                    run.finish(item, null, e)
+                    false
+                } finally {
+                    run.busy.getValue(stage).addAndGet(System.nanoTime() - started)
+                }
+                if (ok && output != null) {
+                    run.progress()
+                    output.send(item)
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package me.vivekanand.android_ocrsample
+
+import android.content.Context
+import android.util.Log
+import android.util.Size
+import androidx.camera.core.CameraSelector
+import androidx.camera.core.ImageAnalysis
+import androidx.camera.core.ImageProxy
+import androidx.camera.core.resolutionselector.ResolutionSelector
+import androidx.camera.core.resolutionselector.ResolutionStrategy
+import androidx.camera.lifecycle.ProcessCameraProvider
+import androidx.core.content.ContextCompat
+import androidx.lifecycle.LifecycleOwner
+import java.nio.ByteBuffer
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+/**
+ * Back-camera frames from CameraX [ImageAnalysis]. The YUV_420_888 planes are repacked into
+ * NV21 in one pass, with no ARGB bitmap in between. KEEP_ONLY_LATEST lets the camera drop
+ * frames while the analyzer is still copying the previous one.
+ */
+class CameraFrameSource(
+    private val context: Context,
+    private val owner: LifecycleOwner,
+    private val targetSize: Size = Size(1280, 720),
+) : FrameSource {
+    private var analyzerExecutor: ExecutorService? = null
+    private var analysis: ImageAnalysis? = null
+    private var provider: ProcessCameraProvider? = null
+
+    override fun start(sink: FrameSink) {
+        val executor = Executors.newSingleThreadExecutor()
+        analyzerExecutor = executor
+        val useCase = ImageAnalysis.Builder()
+            .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+            .setOutputImageFormat(ImageAnalysis.OUTPUT_IMAGE_FORMAT_YUV_420_888)
+            .setResolutionSelector(
+                ResolutionSelector.Builder()
+                    .setResolutionStrategy(
+                        ResolutionStrategy(targetSize, ResolutionStrategy.FALLBACK_RULE_CLOSEST_HIGHER_THEN_LOWER)
+                    )
+                    .build()
+            )
+            .build()
+        useCase.setAnalyzer(executor) { image ->
+            try {
+                sink.onFrame(Frame(image.toNv21(), image.width, image.height))
+            } finally {
+                image.close()
+            }
+        }
+        analysis = useCase
+
+        val future = ProcessCameraProvider.getInstance(context)
+        future.addListener({
+            try {
+                val cameraProvider = future.get()
+                provider = cameraProvider
+                // stop() may already have run while the provider was loading.
+                if (analysis === useCase) {
+                    cameraProvider.bindToLifecycle(owner, CameraSelector.DEFAULT_BACK_CAMERA, useCase)
+                }
+            } catch (e: Exception) {
+                Log.e(TAG, "Camera unavailable", e)
+            }
+        }, ContextCompat.getMainExecutor(context))
+    }
+
+    override fun stop() {
+        analysis?.let { useCase ->
+            useCase.clearAnalyzer()
+            provider?.unbind(useCase)
+        }
+        analysis = null
+        analyzerExecutor?.shutdown()
+        analyzerExecutor = null
+    }
+
+    private companion object {
+        const val TAG = "CameraFrameSource"
+
+        fun ImageProxy.toNv21(): ByteArray {
+            val out = ByteArray(width * height * 3 / 2)
+            val (y, u, v) = planes
+            copyPlane(y.buffer, y.rowStride, y.pixelStride, width, height, out, 0, 1)
+            // NV21 interleaves chroma as V, U.
+            copyPlane(v.buffer, v.rowStride, v.pixelStride, width / 2, height / 2, out, width * height, 2)
+            copyPlane(u.buffer, u.rowStride, u.pixelStride, width / 2, height / 2, out, width * height + 1, 2)
+            return out
+        }
+
+        fun copyPlane(
+            buffer: ByteBuffer, rowStride: Int, pixelStride: Int,
+            cols: Int, rows: Int, out: ByteArray, offset: Int, outStride: Int,
+        ) {
+            var o = offset
+            for (row in 0 until rows) {
+                val start = row * rowStride
+                if (pixelStride == 1 && outStride == 1) {
+                    buffer.position(start)
+                    buffer.get(out, o, cols)
+                    o += cols
+                } else {
+                    var i = start
+                    for (col in 0 until cols) {
+                        out[o] = buffer.get(i)
+                        o += outStride
+                        i += pixelStride
+                    }
+                }
+            }
+        }
+    }
+}
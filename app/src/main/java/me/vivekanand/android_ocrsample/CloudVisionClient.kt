@@ -0,0 +1,210 @@
+package me.vivekanand.android_ocrsample
+
+import me.vivekanand.ocrcore.AnnotateRequestBody
+import me.vivekanand.ocrcore.AnnotateResponseParser
+import me.vivekanand.ocrcore.AnnotateResult
+import me.vivekanand.ocrcore.HedgePolicy
+import me.vivekanand.ocrcore.ImagePayload
+import me.vivekanand.ocrcore.LatencyHistogram
+import okhttp3.Call
+import okhttp3.Callback
+import okhttp3.MediaType.Companion.toMediaType
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import okhttp3.RequestBody
+import okhttp3.RequestBody.Companion.toRequestBody
+import okhttp3.Response
+import okio.Buffer
+import java.io.IOException
+import java.net.SocketTimeoutException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.coroutines.resumeWithException
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.runInterruptible
+import kotlinx.coroutines.suspendCancellableCoroutine
+import kotlinx.coroutines.withContext
+
+class VisionHttpException(val code: Int, message: String?) :
+    IOException("HTTP $code${if (message != null) ": $message" else ""}")
+
+/**
+ * images:annotate client shared by the worker and the activities. The blocking calls serve
+ * Java and thread-based callers; coroutine callers use the `Suspending` variants, which wait
+ * for [RequestScheduler] admission without holding a thread.
+ */
+class CloudVisionClient @JvmOverloads constructor(
+    private val client: OkHttpClient = VisionHttp.client,
+    private val endpoint: String = VisionHttp.endpoint,
+    private val hedgePolicy: HedgePolicy = HedgePolicy(),
+    /** Also read per-word bounding boxes into [AnnotateResult.words]. */
+    private val wordBoxes: Boolean = false,
+    /** Class this client's calls queue under in [RequestScheduler.shared]. */
+    private val priority: RequestScheduler.Priority = RequestScheduler.Priority.AUTOMATION,
+) {
+    constructor(priority: RequestScheduler.Priority) : this(VisionHttp.client, priority = priority)
+
+    /**
+     * Recent latency of successful calls to this endpoint carrying about [batchSize] images,
+     * shared by all clients in the process. Sizes are bucketed by power of two, so a 16-image
+     * batch never sets the hedge threshold for a single live frame.
+     */
+    @JvmOverloads
+    fun latency(batchSize: Int = 1): LatencyHistogram =
+        histograms.getOrPut("$endpoint#${Integer.highestOneBit(batchSize.coerceAtLeast(1))}") { LatencyHistogram() }
+
+    @JvmOverloads
+    fun annotate(apiKey: String, images: List<ImagePayload>, timeoutMillis: Long = 0): List<AnnotateResult> =
+        annotateBody(apiKey, AnnotateRequestBody(images), images.size, timeoutMillis)
+
+    /** Sends an already encoded images:annotate body, e.g. one replayed from [OcrJournal]. */
+    @JvmOverloads
+    fun annotateBody(apiKey: String, body: RequestBody, expected: Int, timeoutMillis: Long = 0): List<AnnotateResult> {
+        val started = System.nanoTime()
+        RequestScheduler.shared?.acquireBlocking(priority, expected, timeoutMillis)
+        val call = newCall(apiKey, body, timeoutMillis, started) ?: throw admissionTimeout(timeoutMillis)
+        call.execute().use { return parse(it, expected) }
+    }
+
+    /**
+     * Suspending [annotate] for coroutine callers. The scheduler wait doesn't hold a thread,
+     * it ends when the caller is cancelled, and [timeoutMillis] covers it as well as the call.
+     */
+    suspend fun annotateSuspending(apiKey: String, images: List<ImagePayload>, timeoutMillis: Long = 0): List<AnnotateResult> {
+        val started = System.nanoTime()
+        RequestScheduler.shared?.acquire(priority, images.size, timeoutMillis)
+        val call = newCall(apiKey, AnnotateRequestBody(images), timeoutMillis, started)
+            ?: throw admissionTimeout(timeoutMillis)
+        return suspendCancellableCoroutine { continuation ->
+            continuation.invokeOnCancellation { call.cancel() }
+            call.enqueue(object : Callback {
+                override fun onFailure(call: Call, e: IOException) {
+                    continuation.resumeWithException(e)
+                }
+
+                override fun onResponse(call: Call, response: Response) {
+                    continuation.resumeWith(runCatching { response.use { parse(it, images.size) } })
+                }
+            })
+        }
+    }
+
+    /**
+     * Like [annotate], but once the call is slower than the policy's hedge percentile an
+     * identical duplicate is fired. The first successful answer wins and the other call is
+     * cancelled. The overall deadline also comes from the latency window, and it includes
+     * the scheduler wait. On expiry this throws [SocketTimeoutException].
+     */
+    fun annotateHedged(apiKey: String, images: List<ImagePayload>): List<AnnotateResult> {
+        val request = request(apiKey, encode(images))
+        val window = latency(images.size)
+        val deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(hedgePolicy.deadlineMillis(window))
+        RequestScheduler.shared?.acquireBlocking(priority, images.size, remainingMillis(deadline).coerceAtLeast(1))
+        return race(request, images.size, window, deadline)
+    }
+
+    /** Suspending [annotateHedged]; cancelling the caller cancels the wait and both calls. */
+    suspend fun annotateHedgedSuspending(apiKey: String, images: List<ImagePayload>): List<AnnotateResult> {
+        val request = withContext(Dispatchers.IO) { request(apiKey, encode(images)) }
+        val window = latency(images.size)
+        val deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(hedgePolicy.deadlineMillis(window))
+        RequestScheduler.shared?.acquire(priority, images.size, remainingMillis(deadline).coerceAtLeast(1))
+        return runInterruptible(Dispatchers.IO) { race(request, images.size, window, deadline) }
+    }
+
+    // Encoded once up front: the hedge reuses the bytes instead of decoding every image
+    // again, and the latency samples cover only the network and the server.
+    private fun encode(images: List<ImagePayload>): RequestBody = OcrMetrics.time(OcrMetrics.Stage.ENCODE) {
+        Buffer().also { AnnotateRequestBody(images).writeTo(it) }.readByteString()
+    }.toRequestBody(JSON)
+
+    // Null when the admission wait already used up [timeoutMillis].
+    private fun newCall(apiKey: String, body: RequestBody, timeoutMillis: Long, startedNanos: Long): Call? {
+        val call = client.newCall(request(apiKey, body))
+        if (timeoutMillis > 0) {
+            val remaining = timeoutMillis - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedNanos)
+            if (remaining <= 0) return null
+            call.timeout().timeout(remaining, TimeUnit.MILLISECONDS)
+        }
+        return call
+    }
+
+    private fun admissionTimeout(timeoutMillis: Long) =
+        SocketTimeoutException("No Cloud Vision slot within $timeoutMillis ms")
+
+    private fun race(request: Request, expected: Int, window: LatencyHistogram, deadline: Long): List<AnnotateResult> {
+        val scheduler = RequestScheduler.shared
+        val hedgeAfter = hedgePolicy.hedgeAfterMillis(window)
+        val outcomes = LinkedBlockingQueue<Result<List<AnnotateResult>>>()
+        val calls = ArrayList<Call>(2)
+
+        fun launch() {
+            val started = System.nanoTime()
+            val call = client.newCall(request)
+            calls += call
+            call.enqueue(object : Callback {
+                override fun onFailure(call: Call, e: IOException) {
+                    outcomes.add(Result.failure(e))
+                }
+
+                override fun onResponse(call: Call, response: Response) {
+                    val outcome = runCatching { response.use { parse(it, expected) } }
+                    if (outcome.isSuccess) window.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started))
+                    outcomes.add(outcome)
+                }
+            })
+        }
+
+        try {
+            if (remainingMillis(deadline) <= 0) throw SocketTimeoutException("No Cloud Vision answer within the deadline")
+            launch()
+            var pending = 1
+            var outcome = outcomes.poll(minOf(hedgeAfter, remainingMillis(deadline)), TimeUnit.MILLISECONDS)
+            // A hedge is extra quota, so it only goes out when nothing is waiting for tokens.
+            if (outcome == null && remainingMillis(deadline) > 0 && scheduler?.tryAcquireNow(expected) != false) {
+                hedges.incrementAndGet()
+                launch()
+                pending++
+            }
+            while (true) {
+                if (outcome != null) {
+                    pending--
+                    if (outcome.isSuccess || pending == 0) return outcome.getOrThrow()
+                }
+                val remaining = remainingMillis(deadline)
+                if (remaining <= 0) throw SocketTimeoutException("No Cloud Vision answer within the deadline")
+                outcome = outcomes.poll(remaining, TimeUnit.MILLISECONDS)
+            }
+        } finally {
+            calls.forEach { it.cancel() }
+        }
+    }
+
+    private fun request(apiKey: String, body: RequestBody): Request = Request.Builder()
+        .url("$endpoint?key=$apiKey")
+        .post(body)
+        .build()
+
+    private fun parse(response: Response, expected: Int): List<AnnotateResult> {
+        if (!response.isSuccessful) {
+            throw VisionHttpException(response.code, AnnotateResponseParser.parseError(response.body.source()))
+        }
+        return OcrMetrics.time(OcrMetrics.Stage.PARSE) {
+            AnnotateResponseParser.parse(response.body.source(), expected, wordBoxes)
+        }
+    }
+
+    private fun remainingMillis(deadlineNanos: Long): Long =
+        TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime())
+
+    companion object {
+        private val JSON = "application/json; charset=utf-8".toMediaType()
+        private val histograms = ConcurrentHashMap<String, LatencyHistogram>()
+
+        /** Hedged duplicates fired since process start. */
+        @JvmField
+        val hedges = AtomicLong()
+    }
+}
@@ -0,0 +1,47 @@
+package me.vivekanand.android_ocrsample
+
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Keeps initialised [OcrEngine] instances for reuse. At most [maxInstances] recognitions run
+ * at once, and at most that many engines ever exist. [trim] closes the idle ones when memory
+ * is low. They are re-created lazily on the next request.
+ */
+class EnginePool<E : OcrEngine>(
+    private val maxInstances: Int = Runtime.getRuntime().availableProcessors(),
+    private val factory: () -> E,
+) {
+    private val permits = Semaphore(maxInstances)
+    private val idle = ArrayDeque<E>()
+    private val created = AtomicInteger()
+
+    val createdCount: Int get() = created.get()
+    val idleCount: Int get() = synchronized(idle) { idle.size }
+
+    suspend fun <T> use(block: (E) -> T): T = permits.withPermit {
+        val engine = synchronized(idle) { idle.removeLastOrNull() } ?: create()
+        try {
+            block(engine)
+        } finally {
+            synchronized(idle) { idle.addLast(engine) }
+        }
+    }
+
+    /** Initialises up to [count] engines ahead of the first request. */
+    fun warmUp(count: Int = 1) {
+        val missing = synchronized(idle) { minOf(count, maxInstances) - idle.size }
+        repeat(missing.coerceAtLeast(0)) {
+            val engine = create()
+            synchronized(idle) { idle.addLast(engine) }
+        }
+    }
+
+    fun trim() {
+        val released = synchronized(idle) { idle.toList().also { idle.clear() } }
+        released.forEach { it.close() }
+    }
+
+    private fun create(): E = factory().also { created.incrementAndGet() }
+}
@@ -0,0 +1,117 @@
+package me.vivekanand.android_ocrsample
+
+import android.util.Log
+import java.io.Closeable
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.channels.BufferOverflow
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.launch
+
+/**
+ * Turns "file finished writing" events into OCR runs. Each path waits [debounceMillis] after its
+ * last event, so a file that is written and then renamed, or rewritten in quick succession, is
+ * read once, after it settles. Settled paths queue in a backlog of [maxBacklog]; when a burst
+ * overflows it the oldest are dropped. [maxInFlight] paths are processed at a time.
+ *
+ * A path already waiting in the backlog is not queued twice; the run reads whatever is on disk.
+ * A path is never processed by two workers at once: if it settles again while its run is in
+ * progress, it is queued once more after that run finishes.
+ */
+class FolderWatcher(
+    private val scope: CoroutineScope,
+    private val debounceMillis: Long = DEFAULT_DEBOUNCE_MILLIS,
+    maxBacklog: Int = DEFAULT_MAX_BACKLOG,
+    maxInFlight: Int = DEFAULT_MAX_IN_FLIGHT,
+    private val process: suspend (String) -> Unit,
+) : Closeable {
+    val droppedCount = AtomicLong()
+    val processedCount = AtomicLong()
+
+    private val settling = ConcurrentHashMap<String, Job>()
+    private val queued = ConcurrentHashMap.newKeySet<String>()
+
+    // Paths being processed, and those of them rewritten meanwhile. Guarded by [lock].
+    private val lock = Any()
+    private val running = HashSet<String>()
+    private val rerun = HashSet<String>()
+    private val backlog = Channel<String>(maxBacklog, BufferOverflow.DROP_OLDEST) { dropped ->
+        queued.remove(dropped)
+        droppedCount.incrementAndGet()
+    }
+
+    init {
+        repeat(maxInFlight) {
+            scope.launch {
+                for (path in backlog) {
+                    synchronized(lock) {
+                        queued.remove(path)
+                        running.add(path)
+                    }
+                    try {
+                        process(path)
+                    } catch (e: CancellationException) {
+                        throw e
+                    } catch (e: Exception) {
+                        Log.w(TAG, "OCR of $path failed: ${e.message}")
+                    } finally {
+                        val again = synchronized(lock) {
+                            running.remove(path)
+                            rerun.remove(path) && queued.add(path)
+                        }
+                        if (again) backlog.trySend(path)
+                    }
+                    processedCount.incrementAndGet()
+                }
+            }
+        }
+    }
+
+    fun onFileWritten(path: String) {
+        if (!isImage(path)) return
+        // Registered before it starts, so a zero debounce can't finish ahead of the map entry.
+        val job = scope.launch(start = CoroutineStart.LAZY) {
+            delay(debounceMillis)
+            settling.remove(path, coroutineContext[Job])
+            val enqueue = synchronized(lock) {
+                if (path in running) {
+                    rerun.add(path)
+                    false
+                } else {
+                    queued.add(path)
+                }
+            }
+            if (enqueue) backlog.trySend(path)
+        }
+        settling.put(path, job)?.cancel()
+        job.start()
+    }
+
+    /** Paths still settling, waiting in the backlog or due for a run after the current one. */
+    fun pendingCount(): Int = settling.size + queued.size + synchronized(lock) { rerun.size }
+
+    override fun close() {
+        backlog.close()
+        scope.cancel()
+    }
+
+    companion object {
+        private const val TAG = "FolderWatcher"
+        const val DEFAULT_DEBOUNCE_MILLIS = 250L
+        const val DEFAULT_MAX_BACKLOG = 32
+        const val DEFAULT_MAX_IN_FLIGHT = 4
+        private val EXTENSIONS = setOf("jpg", "jpeg", "png", "webp")
+
+        // Skips hidden and in-progress names such as MediaStore's ".pending-…" files.
+        fun isImage(path: String): Boolean {
+            val name = path.substringAfterLast('/')
+            return !name.startsWith('.') && name.substringAfterLast('.', "").lowercase() in EXTENSIONS
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package me.vivekanand.android_ocrsample
+
+import android.content.Context
+import android.util.Log
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Semaphore
+import java.io.Closeable
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Live OCR over a stream of frames. Only the newest frame is kept while recognition is busy,
+ * frames that look like the last one sent are skipped, and at most [maxInFlight] recognitions
+ * run at once. Results reach [listener] in frame order, and only when the text changes.
+ */
+class FramePipeline @JvmOverloads constructor(
+    private val listener: Listener,
+    private val maxInFlight: Int = 2,
+    private val minChangedCells: Int = 1,
+    dispatcher: CoroutineDispatcher = Dispatchers.Default,
+    private val recognize: suspend (Frame) -> String?,
+) : FrameSink, Closeable {
+
+    fun interface Listener {
+        fun onText(text: String)
+    }
+
+    private val scope = CoroutineScope(SupervisorJob() + dispatcher)
+    private val frames = Channel<Frame>(Channel.CONFLATED)
+    private val inFlight = Semaphore(maxInFlight)
+    private val offered = AtomicLong()
+    private val taken = AtomicLong()
+    private val skipped = AtomicLong()
+    private val recognized = AtomicLong()
+
+    @Volatile
+    private var lastSent: LumaSignature? = null
+    private var lastPublished = -1L
+    private var lastText: String? = null
+
+    /** Frames replaced by a newer one before the pipeline got to them. */
+    val droppedCount: Long get() = offered.get() - taken.get()
+    val skippedCount: Long get() = skipped.get()
+    val recognizedCount: Long get() = recognized.get()
+
+    init {
+        scope.launch { consume() }
+    }
+
+    override fun onFrame(frame: Frame) {
+        offered.incrementAndGet()
+        frames.trySend(frame)
+    }
+
+    private suspend fun consume() {
+        var sequence = 0L
+        while (true) {
+            // Wait for capacity first so the frame we take is the newest one, not one that
+            // went stale while every slot was busy.
+            inFlight.acquire()
+            val frame = frames.receiveCatching().getOrNull() ?: return inFlight.release()
+            taken.incrementAndGet()
+            val signature = LumaSignature.of(frame)
+            val previous = lastSent
+            if (previous != null && signature.changedCells(previous) < minChangedCells) {
+                skipped.incrementAndGet()
+                inFlight.release()
+                continue
+            }
+            lastSent = signature
+            val id = sequence++
+            scope.launch {
+                try {
+                    recognize(frame)?.let { publish(id, it) }
+                    recognized.incrementAndGet()
+                } catch (e: CancellationException) {
+                    throw e
+                } catch (e: Exception) {
+                    Log.w(TAG, "Frame recognition failed: ${e.message}")
+                    // Let the next similar frame through instead of freezing on stale text.
+                    lastSent = null
+                } finally {
+                    inFlight.release()
+                }
+            }
+        }
+    }
+
+    private fun publish(id: Long, text: String) {
+        synchronized(this) {
+            // A slower, older frame must not overwrite a newer result.
+            if (id < lastPublished) return
+            lastPublished = id
+            if (text == lastText) return
+            lastText = text
+        }
+        listener.onText(text)
+    }
+
+    override fun close() {
+        frames.close()
+        scope.cancel()
+    }
+
+    companion object {
+        private const val TAG = "FramePipeline"
+        private const val FRAME_TIMEOUT_MS = 5_000L
+
+        /** Pipeline backed by Cloud Vision, or null when no API key is configured. */
+        @JvmStatic
+        fun cloudVision(context: Context, listener: Listener): FramePipeline? {
+            val prefs = context.getSharedPreferences("ocr_prefs", Context.MODE_PRIVATE)
+            val apiKey = prefs.getString("cloud_vision_api_key", null)
+            if (apiKey.isNullOrBlank()) return null
+            val client = CloudVisionClient(RequestScheduler.Priority.INTERACTIVE)
+            // A frame that is dropped or replaced cancels its call, queued or not.
+            return FramePipeline(listener) { frame ->
+                client.annotateSuspending(apiKey, listOf(frame.jpeg()), FRAME_TIMEOUT_MS).firstOrNull()?.text
+            }
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package me.vivekanand.android_ocrsample
+
+import android.graphics.ImageFormat
+import android.graphics.Rect
+import android.graphics.YuvImage
+import me.vivekanand.ocrcore.ImagePayload
+
+/** One camera or synthetic frame as NV21: a full-resolution Y plane followed by interleaved VU. */
+class Frame(
+    val nv21: ByteArray,
+    val width: Int,
+    val height: Int,
+    val timestampNanos: Long = System.nanoTime(),
+) {
+    init {
+        require(nv21.size >= width * height * 3 / 2) { "NV21 buffer too small for ${width}x$height" }
+    }
+
+    /** JPEG-compresses straight from the YUV planes while the request body is written. */
+    fun jpeg(quality: Int = 80) = ImagePayload { out ->
+        OcrMetrics.time(OcrMetrics.Stage.ENCODE) {
+            YuvImage(nv21, ImageFormat.NV21, width, height, null)
+                .compressToJpeg(Rect(0, 0, width, height), quality, out)
+        }
+    }
+}
+
+fun interface FrameSink {
+    fun onFrame(frame: Frame)
+}
+
+/** Pushes frames to a sink from its own thread until [stop] is called. */
+interface FrameSource {
+    fun start(sink: FrameSink)
+    fun stop()
+}
@@ -0,0 +1,155 @@
+package me.vivekanand.android_ocrsample
+
+import android.app.AlertDialog
+import android.os.Bundle
+import android.os.Handler
+import android.os.Looper
+import android.text.Editable
+import android.text.TextWatcher
+import android.text.format.DateUtils
+import android.view.View
+import android.view.ViewGroup
+import android.widget.AbsListView
+import android.widget.BaseAdapter
+import android.widget.EditText
+import android.widget.ListView
+import android.widget.TextView
+import androidx.appcompat.app.AppCompatActivity
+import androidx.appcompat.widget.Toolbar
+import java.util.concurrent.Executors
+
+/**
+ * Searches [OcrHistory]. Each query runs on a background thread, newest matches first, one
+ * page at a time; the next page is fetched when the list scrolls near its end.
+ */
+class HistoryActivity : AppCompatActivity() {
+    private val queries = Executors.newSingleThreadExecutor()
+    private val main = Handler(Looper.getMainLooper())
+    private val entries = ArrayList<OcrHistory.Entry>()
+    private val adapter = EntryAdapter()
+    private lateinit var history: OcrHistory
+    private lateinit var emptyView: TextView
+
+    private var query = ""
+    // Bumped on every new query so pages of a superseded one are dropped.
+    private var generation = 0
+    private var loading = false
+    private var exhausted = false
+
+    override fun onCreate(savedInstanceState: Bundle?) {
+        super.onCreate(savedInstanceState)
+        setContentView(R.layout.activity_history)
+        val toolbar = findViewById<Toolbar>(R.id.toolbar)
+        setSupportActionBar(toolbar)
+        supportActionBar?.setDisplayHomeAsUpEnabled(true)
+        supportActionBar?.setTitle(R.string.history)
+
+        history = OcrHistory.get(this)
+        emptyView = findViewById(R.id.history_empty)
+        val list = findViewById<ListView>(R.id.history_list)
+        list.adapter = adapter
+        list.setOnItemClickListener { _, _, position, _ -> showEntry(entries[position]) }
+        list.setOnScrollListener(object : AbsListView.OnScrollListener {
+            override fun onScrollStateChanged(view: AbsListView, scrollState: Int) = Unit
+
+            override fun onScroll(view: AbsListView, first: Int, visible: Int, total: Int) {
+                if (total > 0 && first + visible >= total - PREFETCH_ROWS) loadPage()
+            }
+        })
+
+        val search = findViewById<EditText>(R.id.history_search)
+        search.addTextChangedListener(object : TextWatcher {
+            private val apply = Runnable { restart(search.text.toString()) }
+
+            override fun beforeTextChanged(s: CharSequence?, start: Int, count: Int, after: Int) = Unit
+            override fun onTextChanged(s: CharSequence?, start: Int, before: Int, count: Int) = Unit
+
+            override fun afterTextChanged(s: Editable?) {
+                main.removeCallbacks(apply)
+                main.postDelayed(apply, TYPING_DEBOUNCE_MS)
+            }
+        })
+        restart("")
+    }
+
+    override fun onDestroy() {
+        main.removeCallbacksAndMessages(null)
+        queries.shutdownNow()
+        super.onDestroy()
+    }
+
+    override fun onSupportNavigateUp(): Boolean {
+        finish()
+        return true
+    }
+
+    private fun restart(newQuery: String) {
+        query = newQuery
+        generation++
+        entries.clear()
+        adapter.notifyDataSetChanged()
+        loading = false
+        exhausted = false
+        loadPage()
+    }
+
+    private fun loadPage() {
+        if (loading || exhausted) return
+        loading = true
+        val requested = generation
+        val q = query
+        val beforeId = entries.lastOrNull()?.id ?: Long.MAX_VALUE
+        queries.execute {
+            val page = history.search(q, beforeId)
+            main.post {
+                if (requested != generation || isDestroyed) return@post
+                loading = false
+                exhausted = page.size < OcrHistory.PAGE_SIZE
+                entries.addAll(page)
+                adapter.notifyDataSetChanged()
+                emptyView.visibility = if (entries.isEmpty()) View.VISIBLE else View.GONE
+            }
+        }
+    }
+
+    private fun showEntry(entry: OcrHistory.Entry) {
+        queries.execute {
+            val text = history.text(entry.id) ?: return@execute
+            main.post {
+                if (isDestroyed) return@post
+                AlertDialog.Builder(this)
+                    .setTitle(entry.source ?: entry.engine)
+                    .setMessage(text)
+                    .setPositiveButton("OK", null)
+                    .show()
+            }
+        }
+    }
+
+    private inner class EntryAdapter : BaseAdapter() {
+        override fun getCount() = entries.size
+        override fun getItem(position: Int) = entries[position]
+        override fun getItemId(position: Int) = entries[position].id
+
+        override fun getView(position: Int, convertView: View?, parent: ViewGroup): View {
+            val view = convertView ?: layoutInflater.inflate(android.R.layout.simple_list_item_2, parent, false)
+            val entry = entries[position]
+            view.findViewById<TextView>(android.R.id.text1).apply {
+                text = entry.preview.replace('\n', ' ')
+                maxLines = 2
+            }
+            view.findViewById<TextView>(android.R.id.text2).text = getString(
+                R.string.history_row_details,
+                DateUtils.getRelativeTimeSpanString(entry.createdAt),
+                entry.engine,
+                entry.totalMillis,
+            )
+            return view
+        }
+    }
+
+    private companion object {
+        const val PREFETCH_ROWS = 10
+        const val TYPING_DEBOUNCE_MS = 150L
+    }
+}
@@ -0,0 +1,60 @@
+package me.vivekanand.android_ocrsample
+
+import android.content.ContentResolver
+import android.net.Uri
+import java.io.File
+import java.io.IOException
+import me.vivekanand.ocrcore.FilePayload
+import me.vivekanand.ocrcore.ImagePayload
+import me.vivekanand.ocrcore.ImageProbe
+import me.vivekanand.ocrcore.StreamPayload
+import okio.buffer
+import okio.source
+
+/**
+ * Picks the upload path for a source image. A header probe decides whether the original bytes
+ * already meet Cloud Vision's limits; if they do they are streamed untouched, and only
+ * oversized or unknown images go through decode and JPEG re-encode.
+ */
+object ImagePayloads {
+
+    @JvmStatic
+    fun forFile(path: String, pixelBudget: Int): ImagePayload {
+        val file = File(path)
+        val header = try {
+            file.source().buffer().use { ImageProbe.probe(it) }
+        } catch (e: IOException) {
+            null
+        }
+        if (ImageProbe.canPassThrough(header, file.length(), pixelBudget, BudgetEncoder.targetBytes)) {
+            OcrMetrics.passThroughUploads.incrementAndGet()
+            return FilePayload(file)
+        }
+        return FileBitmapPayload(path, pixelBudget)
+    }
+
+    /**
+     * A pass-through payload for [uri], or null when the image has to be decoded and re-encoded.
+     *
+     * The file must also fit [BudgetEncoder.targetBytes] when a budget is set. With the 256 KB
+     * default that rules out most camera photos and full-screen PNG screenshots, which are
+     * re-encoded instead: a smaller upload in exchange for a decode and an encode on the device.
+     * Setting `upload_target_bytes` to 0 lets everything within Cloud Vision's limits through.
+     */
+    @JvmStatic
+    fun passThrough(resolver: ContentResolver, uri: Uri, pixelBudget: Int): ImagePayload? {
+        val length = try {
+            resolver.openAssetFileDescriptor(uri, "r")?.use { it.length } ?: -1L
+        } catch (e: IOException) {
+            -1L
+        }
+        val header = try {
+            resolver.openInputStream(uri)?.source()?.buffer()?.use { ImageProbe.probe(it) }
+        } catch (e: IOException) {
+            null
+        }
+        if (!ImageProbe.canPassThrough(header, length, pixelBudget, BudgetEncoder.targetBytes)) return null
+        OcrMetrics.passThroughUploads.incrementAndGet()
+        return StreamPayload(length) { resolver.openInputStream(uri) ?: throw IOException("Cannot open $uri") }
+    }
+}
@@ -0,0 +1,132 @@
+package me.vivekanand.android_ocrsample
+
+import android.graphics.Bitmap
+import android.graphics.Color
+import java.io.IOException
+import java.util.concurrent.ConcurrentHashMap
+import kotlinx.coroutines.withContext
+import me.vivekanand.ocrcore.FilePayload
+import me.vivekanand.ocrcore.IncrementalLayout
+import me.vivekanand.ocrcore.PixelRect
+import me.vivekanand.ocrcore.ReadingOrder
+import me.vivekanand.ocrcore.TextBlock
+import me.vivekanand.ocrcore.TileSignature
+
+/**
+ * Cloud OCR for a file that is overwritten with successive, mostly identical screenshots.
+ * The previous frame's tile signature and word boxes are kept per path. A new frame is diffed
+ * tile by tile, only crops of the changed bands are uploaded (in one annotate call), and their
+ * words replace the old ones in that area. The text is rebuilt from the merged words in
+ * reading order.
+ *
+ * The first frame, a size change, or a change over [MAX_COVERAGE] of the screen is read whole.
+ * So is every [KEYFRAME_EVERY]th frame, or any frame [KEYFRAME_MILLIS] after the last whole
+ * read, so a missed change can't leave stale words in place for good. An image with an EXIF
+ * rotation is always read whole: that read comes back upright, while tiles and crops are cut
+ * in stored pixel order.
+ */
+object IncrementalOcr {
+    // A 1080x2400 screenshot at sample size 4; fine enough for a changed glyph to touch its tile.
+    private const val THUMBNAIL_PIXELS = 270 * 600
+    private const val MAX_COVERAGE = 0.5
+    private const val KEYFRAME_EVERY = 20
+    private const val KEYFRAME_MILLIS = 60_000L
+
+    private class Frame(
+        val width: Int,
+        val height: Int,
+        val signature: TileSignature,
+        val words: List<TextBlock>,
+        val sinceKeyframe: Int,
+        val keyframeAt: Long,
+    )
+
+    class Result(val text: String?, val words: List<TextBlock>)
+
+    private val frames = ConcurrentHashMap<String, Frame>()
+    private val client by lazy { CloudVisionClient(wordBoxes = true) }
+
+    suspend fun recognize(imagePath: String, apiKey: String, pixelBudget: Int): Result {
+        val (width, height, signature, upright) = withContext(BitmapDecoder.dispatcher) { signatureOf(imagePath) }
+        val now = System.currentTimeMillis()
+        val previous = frames[imagePath]?.takeIf {
+            upright && it.width == width && it.height == height &&
+                it.sinceKeyframe < KEYFRAME_EVERY && now - it.keyframeAt < KEYFRAME_MILLIS
+        }
+        val dirty = if (previous == null) null else signature.dirtyRects(previous.signature, width, height)
+            ?.let { IncrementalLayout.grow(it, previous.words) }
+
+        val base = previous?.takeIf { dirty != null && IncrementalLayout.coverage(dirty, width, height) <= MAX_COVERAGE }
+        val words = if (base == null || dirty == null) {
+            readWhole(imagePath, apiKey, pixelBudget, width, height)
+        } else if (dirty.isEmpty()) {
+            OcrMetrics.incrementalUnchanged.incrementAndGet()
+            base.words
+        } else {
+            OcrMetrics.incrementalRuns.incrementAndGet()
+            IncrementalLayout.merge(base.words, dirty, readRegions(imagePath, apiKey, pixelBudget, dirty))
+        }
+        frames[imagePath] = if (base == null) {
+            Frame(width, height, signature, words, 0, now)
+        } else {
+            Frame(width, height, signature, words, base.sinceKeyframe + 1, base.keyframeAt)
+        }
+        return Result(if (words.isEmpty()) null else ReadingOrder.toText(words), words)
+    }
+
+    fun forget(imagePath: String) {
+        frames.remove(imagePath)
+    }
+
+    private suspend fun readWhole(imagePath: String, apiKey: String, pixelBudget: Int, width: Int, height: Int): List<TextBlock> {
+        val payload = ImagePayloads.forFile(imagePath, pixelBudget)
+        // Pass-through uploads keep the original pixels; re-encoded ones are downsampled.
+        val scale = if (payload is FilePayload) 1 else BitmapDecoder.calculateSampleSize(width, height, pixelBudget)
+        val result = client.annotateHedgedSuspending(apiKey, listOf(payload)).single()
+        if (result.error != null) throw IOException(result.error)
+        return ReadingOrder.sort(IncrementalLayout.toFrame(result.words.orEmpty(), PixelRect(0, 0, width, height), scale))
+    }
+
+    private suspend fun readRegions(imagePath: String, apiKey: String, pixelBudget: Int, rects: List<PixelRect>): List<TextBlock> {
+        val decoder = BitmapDecoder.newRegionDecoder(imagePath) ?: throw IOException("Unreadable image: $imagePath")
+        val shared = SharedRegionDecoder(decoder)
+        try {
+            val results = client.annotateHedgedSuspending(apiKey, rects.map { RegionPayload(shared, it, pixelBudget) })
+            return rects.zip(results).flatMap { (rect, result) ->
+                if (result.error != null) throw IOException(result.error)
+                val scale = BitmapDecoder.calculateSampleSize(rect.width, rect.height, pixelBudget)
+                IncrementalLayout.toFrame(result.words.orEmpty(), rect, scale)
+            }
+        } finally {
+            shared.release()
+        }
+    }
+
+    private data class Signature(val width: Int, val height: Int, val signature: TileSignature, val upright: Boolean)
+
+    private fun signatureOf(imagePath: String): Signature {
+        val decoder = BitmapDecoder.newRegionDecoder(imagePath) ?: throw IOException("Unreadable image: $imagePath")
+        val width = decoder.width
+        val height = decoder.height
+        val thumbnail = try {
+            BitmapDecoder.decodeRegion(decoder, PixelRect(0, 0, width, height), THUMBNAIL_PIXELS)
+        } finally {
+            decoder.recycle()
+        } ?: throw IOException("Unreadable image: $imagePath")
+        try {
+            val tiles = TileSignature.of(luma(thumbnail), thumbnail.width, thumbnail.height)
+            return Signature(width, height, tiles, BitmapDecoder.orientationOf(imagePath) == 1)
+        } finally {
+            BitmapPool.put(thumbnail)
+        }
+    }
+
+    private fun luma(bitmap: Bitmap): ByteArray {
+        val pixels = IntArray(bitmap.width * bitmap.height)
+        bitmap.getPixels(pixels, 0, bitmap.width, 0, 0, bitmap.width, bitmap.height)
+        return ByteArray(pixels.size) { i ->
+            val c = pixels[i]
+            ((Color.red(c) * 299 + Color.green(c) * 587 + Color.blue(c) * 114) / 1000).toByte()
+        }
+    }
+}
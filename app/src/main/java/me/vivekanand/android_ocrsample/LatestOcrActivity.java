@@ -1,17 +1,22 @@
 package me.vivekanand.android_ocrsample;
 
 import android.app.AlertDialog;
+import android.content.ClipData;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.graphics.Bitmap;
+import android.net.Uri;
 import android.os.Bundle;
 import android.provider.MediaStore;
 import android.text.InputType;
-import android.util.Base64;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.View;
+import android.widget.Button;
 import android.widget.EditText;
+import android.widget.TextView;
 import android.widget.Toast;
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
@@ -20,15 +25,14 @@ import androidx.appcompat.widget.Toolbar;
 //import com.google.mlkit.vision.text.TextRecognizer;
 //import com.google.mlkit.vision.text.Text;
 //import com.googlecode.tesseract.android.TessBaseAPI;
-import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import me.vivekanand.ocrcore.AnnotateResult;
+import me.vivekanand.ocrcore.ImagePayload;
 //import java.io.File;
 //import java.io.FileOutputStream;
 //import java.io.InputStream;
-import okhttp3.MediaType;
-import okhttp3.OkHttpClient;
-import okhttp3.Request;
-import okhttp3.RequestBody;
-import okhttp3.Response;
 //import com.google.mlkit.vision.text.latin.TextRecognizerOptions;
 
 public class LatestOcrActivity extends AppCompatActivity {
@@ -36,6 +40,25 @@ public class LatestOcrActivity extends AppCompatActivity {
     private static final int REQUEST_IMAGE_TESSERACT = 102;
     private static final int REQUEST_IMAGE_CLOUD = 103;
     private String cloudVisionApiKey;
+    private TextView importStatus;
+    private Button cancelImportButton;
+    private final BulkImport.Listener importListener = new BulkImport.Listener() {
+        @Override
+        public void onProgress(@NonNull BulkPipeline.Progress progress) {
+            runOnUiThread(() -> importStatus.setText("Importing: " + progress.getCompleted() + "/"
+                + progress.getTotal() + " done, " + progress.getFailed() + " failed"));
+        }
+
+        @Override
+        public void onFinished(BulkPipeline.Report report) {
+            runOnUiThread(() -> {
+                importStatus.setText(report == null ? "Import stopped." : "Import finished.");
+                cancelImportButton.setVisibility(View.GONE);
+            });
+            showOcrResult("Cloud Vision import", report == null ? "Import stopped."
+                : report + "\nResults are saved in History.");
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -55,6 +78,26 @@ public class LatestOcrActivity extends AppCompatActivity {
         findViewById(R.id.btn_mlkit_ocr).setOnClickListener(v -> runMlKitOcr());
         findViewById(R.id.btn_tesseract_ocr).setOnClickListener(v -> runTesseractOcr());
         findViewById(R.id.btn_cloud_vision_ocr).setOnClickListener(v -> runCloudVisionOcr());
+
+        importStatus = findViewById(R.id.import_status);
+        cancelImportButton = findViewById(R.id.btn_cancel_import);
+        cancelImportButton.setOnClickListener(v -> BulkImport.cancel());
+        if (BulkImport.isRunning()) {
+            BulkImport.attach(importListener);
+            showImportRunning();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        BulkImport.detach(importListener);
+        super.onDestroy();
+    }
+
+    private void showImportRunning() {
+        importStatus.setText("Importing…");
+        importStatus.setVisibility(View.VISIBLE);
+        cancelImportButton.setVisibility(View.VISIBLE);
     }
 
     private void promptForApiKey(SharedPreferences prefs) {
@@ -101,25 +144,71 @@ public class LatestOcrActivity extends AppCompatActivity {
             return;
         }
         Intent intent = new Intent(Intent.ACTION_PICK, MediaStore.Images.Media.EXTERNAL_CONTENT_URI);
+        intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
         startActivityForResult(intent, REQUEST_IMAGE_CLOUD);
     }
 
     @Override
     protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
         super.onActivityResult(requestCode, resultCode, data);
+        if (resultCode == RESULT_OK && data != null && requestCode == REQUEST_IMAGE_CLOUD
+                && data.getClipData() != null && data.getClipData().getItemCount() > 1) {
+            importAll(data.getClipData());
+            return;
+        }
         if (resultCode == RESULT_OK && data != null && data.getData() != null) {
-            try {
-                Bitmap bitmap = MediaStore.Images.Media.getBitmap(this.getContentResolver(), data.getData());
-                /*if (requestCode == REQUEST_IMAGE_MLKIT) {
-                    runMlKitOcrOnBitmap(bitmap);
-                } else if (requestCode == REQUEST_IMAGE_TESSERACT) {
-                    runTesseractOcrOnBitmap(bitmap);
-                } else */ if (requestCode == REQUEST_IMAGE_CLOUD) {
-                    runCloudVisionOcrOnBitmap(bitmap);
+            Uri uri = data.getData();
+            BitmapDecoder.executor.execute(() -> decodeAndRun(requestCode, uri));
+        }
+    }
+
+    // Runs on a BitmapDecoder thread so large photos never decode on the UI thread.
+    private void decodeAndRun(int requestCode, Uri uri) {
+        try {
+            if (requestCode == REQUEST_IMAGE_CLOUD) {
+                // Compliant JPEG/PNG files are uploaded as they are, without a bitmap.
+                ImagePayload original = ImagePayloads.passThrough(getContentResolver(), uri,
+                    BitmapDecoder.pixelBudget(this));
+                if (original != null) {
+                    runCloudVisionOcr(original, null, uri.toString());
+                    return;
                 }
-            } catch (Exception e) {
-                showOcrResult("Error", e.getMessage());
             }
+            long decodeStart = OcrMetrics.start(OcrMetrics.Stage.DECODE);
+            Bitmap bitmap;
+            try {
+                bitmap = BitmapDecoder.decodeUri(getContentResolver(), uri,
+                    BitmapDecoder.pixelBudget(this), false);
+            } finally {
+                OcrMetrics.stop(OcrMetrics.Stage.DECODE, decodeStart);
+            }
+            if (bitmap == null) {
+                showOcrResult("Error", "Failed to decode image.");
+                return;
+            }
+            /*if (requestCode == REQUEST_IMAGE_MLKIT) {
+                runMlKitOcrOnBitmap(bitmap);
+            } else if (requestCode == REQUEST_IMAGE_TESSERACT) {
+                runTesseractOcrOnBitmap(bitmap);
+            } else */ if (requestCode == REQUEST_IMAGE_CLOUD) {
+                runCloudVisionOcrOnBitmap(bitmap, uri.toString());
+            } else {
+                BitmapPool.put(bitmap);
+            }
+        } catch (Exception e) {
+            showOcrResult("Error", e.getMessage());
+        }
+    }
+
+    private void importAll(ClipData clip) {
+        List<Uri> uris = new ArrayList<>();
+        for (int i = 0; i < clip.getItemCount(); i++) {
+            uris.add(clip.getItemAt(i).getUri());
+        }
+        if (BulkImport.start(this, uris, importListener)) {
+            showImportRunning();
+        } else {
+            showOcrResult("Cloud Vision import", "Another import is already running.");
         }
     }
 
@@ -164,43 +253,38 @@ public class LatestOcrActivity extends AppCompatActivity {
 */
 
     // Cloud Vision OCR logic
-    private void runCloudVisionOcrOnBitmap(Bitmap bitmap) {
+    private void runCloudVisionOcrOnBitmap(Bitmap bitmap, String source) {
+        runCloudVisionOcr(new BitmapPayload(bitmap), bitmap, source);
+    }
+
+    // [bitmap] backs [payload] when it was decoded, and goes back to the pool afterwards.
+    private void runCloudVisionOcr(ImagePayload payload, @Nullable Bitmap bitmap, String source) {
         if (cloudVisionApiKey == null || cloudVisionApiKey.isEmpty()) {
             promptForApiKey(getSharedPreferences("ocr_prefs", MODE_PRIVATE));
             showOcrResult("Cloud Vision OCR", "API key required. Please try again after entering your key.");
+            if (bitmap != null) BitmapPool.put(bitmap);
             return;
         }
         try {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 90, baos);
-            String base64 = Base64.encodeToString(baos.toByteArray(), Base64.NO_WRAP);
             new Thread(() -> {
+                long start = OcrMetrics.start(OcrMetrics.Stage.TOTAL);
                 try {
-                    String json = "{ \"requests\": [ { \"image\": { \"content\": \"" + base64 + "\" }, \"features\": [ { \"type\": \"TEXT_DETECTION\" } ] } ] }";
-                    OkHttpClient client = new OkHttpClient();
-                    RequestBody body = RequestBody.create(json, MediaType.parse("application/json"));
-                    Request request = new Request.Builder()
-                        .url("https://vision.googleapis.com/v1/images:annotate?key=" + cloudVisionApiKey)
-                        .post(body)
-                        .build();
-                    Response response = client.newCall(request).execute();
-                    String result = response.body().string();
+                    List<AnnotateResult> results = new CloudVisionClient(RequestScheduler.Priority.INTERACTIVE)
+                        .annotate(cloudVisionApiKey, Collections.singletonList(payload));
                     final String ocrText;
-                    if (result.contains("textAnnotations")) {
-                        java.util.regex.Matcher matcher = java.util.regex.Pattern
-                            .compile("\"description\"\\s*:\\s*\"(.*?)\"")
-                            .matcher(result);
-                        if (matcher.find()) {
-                            ocrText = matcher.group(1);
-                        } else {
-                            ocrText = "No text found";
-                        }
+                    if (!results.isEmpty() && results.get(0).getText() != null) {
+                        ocrText = results.get(0).getText();
+                        OcrHistory.get(this).record(ocrText, source, OcrEngines.Kind.CLOUD_VISION.getPrefValue(),
+                            (System.nanoTime() - start) / 1_000_000);
                     } else {
                         ocrText = "No text found";
                     }
                     runOnUiThread(() -> showOcrResult("Cloud Vision OCR", ocrText));
                 } catch (Exception e) {
                     runOnUiThread(() -> showOcrResult("Cloud Vision OCR", "Error: " + e.getMessage()));
+                } finally {
+                    if (bitmap != null) BitmapPool.put(bitmap);
+                    OcrMetrics.stop(OcrMetrics.Stage.TOTAL, start);
                 }
             }).start();
         } catch (Exception e) {
@@ -210,11 +294,15 @@ public class LatestOcrActivity extends AppCompatActivity {
 
     // Show OCR result in a dialog
     private void showOcrResult(String title, String result) {
-        runOnUiThread(() -> new AlertDialog.Builder(this)
-            .setTitle(title)
-            .setMessage(result)
-            .setPositiveButton("OK", null)
-            .show());
+        runOnUiThread(() -> {
+            // Background work can outlive the activity; a dialog on a dead window would crash.
+            if (isFinishing() || isDestroyed()) return;
+            new AlertDialog.Builder(this)
+                .setTitle(title)
+                .setMessage(result)
+                .setPositiveButton("OK", null)
+                .show();
+        });
     }
 
     @Override
@@ -0,0 +1,45 @@
+package me.vivekanand.android_ocrsample
+
+/**
+ * Coarse fingerprint of a frame's Y plane: the mean luma of each cell in a [GRID] x [GRID]
+ * grid, sampled every [STEP] pixels. Two frames whose cells all agree within a few levels show
+ * the same text, so the second one isn't worth a recognition call.
+ */
+class LumaSignature private constructor(private val cells: IntArray) {
+
+    /** Number of cells whose mean luma moved by more than [threshold] levels. */
+    fun changedCells(other: LumaSignature, threshold: Int = CELL_THRESHOLD): Int {
+        var changed = 0
+        for (i in cells.indices) {
+            if (Math.abs(cells[i] - other.cells[i]) > threshold) changed++
+        }
+        return changed
+    }
+
+    companion object {
+        const val GRID = 16
+        const val CELL_THRESHOLD = 8
+        private const val STEP = 4
+
+        fun of(frame: Frame): LumaSignature = of(frame.nv21, frame.width, frame.height)
+
+        fun of(luma: ByteArray, width: Int, height: Int): LumaSignature {
+            val sums = LongArray(GRID * GRID)
+            val counts = IntArray(GRID * GRID)
+            var y = 0
+            while (y < height) {
+                val row = y * GRID / height * GRID
+                val offset = y * width
+                var x = 0
+                while (x < width) {
+                    val cell = row + x * GRID / width
+                    sums[cell] += (luma[offset + x].toInt() and 0xFF).toLong()
+                    counts[cell]++
+                    x += STEP
+                }
+                y += STEP
+            }
+            return LumaSignature(IntArray(sums.size) { if (counts[it] == 0) 0 else (sums[it] / counts[it]).toInt() })
+        }
+    }
+}
@@ -2,11 +2,11 @@ package me.vivekanand.android_ocrsample;
 
 import android.Manifest;
 import android.app.AlertDialog;
+import android.content.ClipData;
 import android.content.ContentValues;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Bundle;
 import android.provider.MediaStore;
@@ -15,10 +15,10 @@ import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import androidx.appcompat.app.AppCompatActivity;
 import android.text.method.ScrollingMovementMethod;
-import android.util.DisplayMetrics;
 import android.util.Log;
 import android.util.SparseArray;
 import android.view.View;
+import android.widget.Button;
 import android.widget.TextView;
 import android.widget.Toast;
 import android.widget.ProgressBar;
@@ -31,8 +31,6 @@ import androidx.appcompat.widget.Toolbar;
 //import com.google.android.gms.vision.text.TextRecognizer;
 
 import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -49,6 +47,29 @@ public class MainActivity extends AppCompatActivity {
     private ProgressBar progressLoader;
     private ActivityResultLauncher<Intent> galleryLauncher;
     private ActivityResultLauncher<Intent> cameraLauncher;
+    private ActivityResultLauncher<Uri> folderLauncher;
+    private Button importButton;
+    private final BulkImport.Listener importListener = new BulkImport.Listener() {
+        @Override
+        public void onProgress(@NonNull BulkPipeline.Progress progress) {
+            runOnUiThread(() -> detectedTextView.setText("Importing: " + progress.getCompleted() + "/"
+                    + progress.getTotal() + " done, " + progress.getFailed() + " failed"));
+        }
+
+        @Override
+        public void onFinished(BulkPipeline.Report report) {
+            runOnUiThread(() -> {
+                detectedTextView.setText(report == null ? "Import stopped."
+                        : report + "\nResults are saved in History.");
+                importButton.setText(R.string.import_folder);
+                hideLoader();
+            });
+        }
+    };
+    private Button liveButton;
+    private Button watchButton;
+    private FramePipeline livePipeline;
+    private FrameSource liveSource;
 
     @Override
     public void onRequestPermissionsResult(int requestCode,
@@ -129,7 +150,16 @@ public class MainActivity extends AppCompatActivity {
             new ActivityResultContracts.StartActivityForResult(),
             result -> {
                 if (result.getResultCode() == RESULT_OK && result.getData() != null) {
-                    Uri uri = result.getData().getData();
+                    ClipData clip = result.getData().getClipData();
+                    if (clip != null && clip.getItemCount() > 1) {
+                        List<Uri> uris = new ArrayList<>();
+                        for (int i = 0; i < clip.getItemCount(); i++) {
+                            uris.add(clip.getItemAt(i).getUri());
+                        }
+                        startImport(uris, null);
+                        return;
+                    }
+                    Uri uri = clip != null ? clip.getItemAt(0).getUri() : result.getData().getData();
                     if (uri != null) {
                         inspect(uri);
                     } else {
@@ -164,6 +194,7 @@ public class MainActivity extends AppCompatActivity {
             Intent intent = new Intent();
             intent.setType("image/*");
             intent.setAction(Intent.ACTION_GET_CONTENT);
+            intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
             galleryLauncher.launch(intent);
         });
 
@@ -180,11 +211,111 @@ public class MainActivity extends AppCompatActivity {
             cameraLauncher.launch(intent);
         });
 
+        folderLauncher = registerForActivityResult(
+            new ActivityResultContracts.OpenDocumentTree(),
+            treeUri -> {
+                if (treeUri != null) startImport(null, treeUri);
+            }
+        );
+
+        importButton = findViewById(R.id.import_folder);
+        importButton.setOnClickListener(v -> {
+            if (BulkImport.isRunning()) {
+                BulkImport.cancel();
+            } else {
+                folderLauncher.launch(null);
+            }
+        });
+        if (BulkImport.isRunning()) {
+            BulkImport.attach(importListener);
+            importButton.setText(R.string.cancel_import);
+        }
+
+        watchButton = findViewById(R.id.watch_folder);
+        watchButton.setText(WatchFolderService.isRunning() ? R.string.stop_watching : R.string.start_watching);
+        watchButton.setOnClickListener(v -> {
+            if (WatchFolderService.isRunning()) {
+                WatchFolderService.stop(this);
+                watchButton.setText(R.string.start_watching);
+            } else {
+                WatchFolderService.start(this);
+                watchButton.setText(R.string.stop_watching);
+            }
+        });
+
+        liveButton = findViewById(R.id.live_ocr);
+        liveButton.setOnClickListener(v -> {
+            if (livePipeline == null) {
+                startLiveOcr();
+            } else {
+                stopLiveOcr();
+            }
+        });
+
         detectedTextView = findViewById(R.id.detected_text);
         detectedTextView.setMovementMethod(new ScrollingMovementMethod());
         progressLoader = findViewById(R.id.progress_loader);
     }
 
+    @Override
+    protected void onDestroy() {
+        BulkImport.detach(importListener);
+        super.onDestroy();
+    }
+
+    // Either a multi-selection or a whole folder; results land in the history store.
+    private void startImport(List<Uri> uris, Uri treeUri) {
+        boolean started = uris != null
+                ? BulkImport.start(this, uris, importListener)
+                : BulkImport.startFolder(this, treeUri, importListener);
+        if (!started) {
+            Toast.makeText(this, BulkImport.isRunning() ? "An import is already running"
+                    : "Cloud Vision API key required", Toast.LENGTH_LONG).show();
+            return;
+        }
+        importButton.setText(R.string.cancel_import);
+        detectedTextView.setText("Importing…");
+        showLoader();
+    }
+
+    @Override
+    protected void onStop() {
+        stopLiveOcr();
+        super.onStop();
+    }
+
+    private void startLiveOcr() {
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.CAMERA)
+                != PackageManager.PERMISSION_GRANTED) {
+            requestPermissions();
+            return;
+        }
+        livePipeline = FramePipeline.cloudVision(this, text ->
+                runOnUiThread(() -> detectedTextView.setText(text)));
+        if (livePipeline == null) {
+            Toast.makeText(this, "Cloud Vision API key required", Toast.LENGTH_LONG).show();
+            return;
+        }
+        liveSource = new CameraFrameSource(this, this);
+        liveSource.start(livePipeline);
+        liveButton.setText(R.string.stop_live_ocr);
+    }
+
+    private void stopLiveOcr() {
+        if (liveSource != null) {
+            liveSource.stop();
+            liveSource = null;
+        }
+        if (livePipeline != null) {
+            Log.d(TAG, "Live OCR: recognized=" + livePipeline.getRecognizedCount()
+                    + " skipped=" + livePipeline.getSkippedCount()
+                    + " dropped=" + livePipeline.getDroppedCount());
+            livePipeline.close();
+            livePipeline = null;
+        }
+        if (liveButton != null) liveButton.setText(R.string.start_live_ocr);
+    }
+
     private void showLoader() {
         runOnUiThread(() -> {
             if (progressLoader != null) progressLoader.setVisibility(View.VISIBLE);
@@ -247,52 +378,77 @@ public class MainActivity extends AppCompatActivity {
 
     private void inspect(Uri uri) {
         showLoader();
-        InputStream is = null;
+        BitmapDecoder.executor.execute(() -> decodeAndRecognize(uri));
+    }
+
+    // Runs on a BitmapDecoder thread; UI updates are posted back.
+    private void decodeAndRecognize(Uri uri) {
         Bitmap bitmap = null;
         try {
-            is = getContentResolver().openInputStream(uri);
-            if (is == null) {
-                Log.e(TAG, "InputStream is null for uri: " + uri);
-                Toast.makeText(this, "Failed to open image for OCR", Toast.LENGTH_LONG).show();
-                detectedTextView.setText("Failed to open image for OCR.");
-                hideLoader();
-                return;
+            long decodeStart = OcrMetrics.start(OcrMetrics.Stage.DECODE);
+            try {
+                bitmap = BitmapDecoder.decodeUri(getContentResolver(), uri,
+                        BitmapDecoder.pixelBudget(this), false);
+            } finally {
+                OcrMetrics.stop(OcrMetrics.Stage.DECODE, decodeStart);
             }
-            BitmapFactory.Options options = new BitmapFactory.Options();
-            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
-            options.inSampleSize = 2;
-            options.inScreenDensity = DisplayMetrics.DENSITY_LOW;
-            bitmap = BitmapFactory.decodeStream(is, null, options);
             if (bitmap == null) {
                 Log.e(TAG, "Bitmap decode failed for uri: " + uri);
-                Toast.makeText(this, "Failed to decode image for OCR", Toast.LENGTH_LONG).show();
-                detectedTextView.setText("Failed to decode image for OCR.");
-                hideLoader();
+                showInspectError("Failed to decode image for OCR");
                 return;
             }
-            //inspectFromBitmap(bitmap);
+            recognize(bitmap, uri.toString());
+            // The recognition thread owns the bitmap now.
+            bitmap = null;
         } catch (FileNotFoundException e) {
             Log.w(TAG, "Failed to find the file: " + uri, e);
-            Toast.makeText(this, "Image file not found", Toast.LENGTH_LONG).show();
-            detectedTextView.setText("Image file not found.");
-            hideLoader();
+            showInspectError("Image file not found");
         } catch (Exception e) {
             Log.e(TAG, "Error loading image: " + uri, e);
-            Toast.makeText(this, "Error loading image", Toast.LENGTH_LONG).show();
-            detectedTextView.setText("Error loading image.");
-            hideLoader();
+            showInspectError("Error loading image");
         } finally {
             if (bitmap != null) {
-                bitmap.recycle();
+                BitmapPool.put(bitmap);
             }
-            if (is != null) {
-                try {
-                    is.close();
-                } catch (IOException e) {
-                    Log.w(TAG, "Failed to close InputStream", e);
+        }
+    }
+
+    private void showInspectError(String message) {
+        runOnUiThread(() -> {
+            Toast.makeText(this, message, Toast.LENGTH_LONG).show();
+            detectedTextView.setText(message + ".");
+            hideLoader();
+        });
+    }
+
+    // Runs the engine picked in the "ocr_engine" pref on a pooled, pre-initialised instance.
+    private void recognize(Bitmap bitmap, String source) {
+        new Thread(() -> {
+            String text;
+            long start = OcrMetrics.start(OcrMetrics.Stage.TOTAL);
+            try {
+                text = OcrEngines.recognizeBlocking(this, bitmap);
+                if (text != null && !text.isEmpty()) {
+                    OcrHistory.get(this).record(text, source, OcrEngines.selected(this).getPrefValue(),
+                            (System.nanoTime() - start) / 1_000_000);
                 }
+            } catch (Exception e) {
+                Log.e(TAG, "OCR failed", e);
+                text = "Error: " + e.getMessage();
+            } finally {
+                BitmapPool.put(bitmap);
+                OcrMetrics.stop(OcrMetrics.Stage.TOTAL, start);
             }
-        }
+            final String result = text;
+            runOnUiThread(() -> {
+                if (result == null || result.isEmpty()) {
+                    detectedTextView.setText("No text detected in the image.");
+                } else {
+                    detectedTextView.setText(result);
+                }
+                hideLoader();
+            });
+        }).start();
     }
 
     @Override
@@ -308,6 +464,10 @@ public class MainActivity extends AppCompatActivity {
             startActivity(intent);
             return true;
         }
+        if (item.getItemId() == R.id.action_history) {
+            startActivity(new Intent(MainActivity.this, HistoryActivity.class));
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
 }
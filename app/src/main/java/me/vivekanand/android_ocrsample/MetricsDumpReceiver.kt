@@ -0,0 +1,31 @@
+package me.vivekanand.android_ocrsample
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+import android.content.pm.ApplicationInfo
+import android.util.Log
+import java.io.File
+
+/**
+ * Debug builds only:
+ * `adb shell am broadcast -a me.vivekanand.android_ocrsample.ACTION_DUMP_METRICS -n me.vivekanand.android_ocrsample/.MetricsDumpReceiver`
+ * writes the metrics to `Android/data/<package>/files/ocr_metrics.txt`. Add `--ez reset true` to clear them afterwards.
+ */
+class MetricsDumpReceiver : BroadcastReceiver() {
+    override fun onReceive(context: Context, intent: Intent) {
+        if (context.applicationInfo.flags and ApplicationInfo.FLAG_DEBUGGABLE == 0) return
+        if (intent.action != ACTION_DUMP_METRICS) return
+
+        val report = OcrMetrics.dump()
+        val file = File(context.getExternalFilesDir(null) ?: context.filesDir, "ocr_metrics.txt")
+        file.writeText(report)
+        Log.i(TAG, "Metrics written to $file\n$report")
+        if (intent.getBooleanExtra("reset", false)) OcrMetrics.reset()
+    }
+
+    companion object {
+        const val ACTION_DUMP_METRICS = "me.vivekanand.android_ocrsample.ACTION_DUMP_METRICS"
+        private const val TAG = "OcrMetrics"
+    }
+}
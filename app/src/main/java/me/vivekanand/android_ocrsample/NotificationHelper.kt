@@ -6,9 +6,12 @@ import android.content.Context
 import android.os.Build
 import androidx.core.app.NotificationCompat
 import androidx.core.app.NotificationManagerCompat
+import androidx.work.ForegroundInfo
 
 object NotificationHelper {
     private const val CHANNEL_ID = "result_activity_channel"
+    private const val WORK_CHANNEL_ID = "ocr_work_channel"
+    private const val WATCH_CHANNEL_ID = "ocr_watch_channel"
 
     fun postErrorNotification(context: Context, contentText: String) {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
@@ -29,4 +32,44 @@ object NotificationHelper {
 
         NotificationManagerCompat.from(context).notify(1002, builder.build())
     }
-}
\ No newline at end of file
+
+    fun workForegroundInfo(context: Context): ForegroundInfo {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            val channel = NotificationChannel(
+                WORK_CHANNEL_ID, "OCR in progress",
+                NotificationManager.IMPORTANCE_LOW
+            )
+            context.getSystemService(NotificationManager::class.java)
+                ?.createNotificationChannel(channel)
+        }
+
+        val notification = NotificationCompat.Builder(context, WORK_CHANNEL_ID)
+            .setSmallIcon(android.R.drawable.stat_notify_sync)
+            .setContentTitle("Running OCR")
+            .setPriority(NotificationCompat.PRIORITY_LOW)
+            .setOngoing(true)
+            .build()
+
+        return ForegroundInfo(1003, notification)
+    }
+
+    fun watchForegroundInfo(context: Context): ForegroundInfo {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            val channel = NotificationChannel(
+                WATCH_CHANNEL_ID, "Watch folders",
+                NotificationManager.IMPORTANCE_LOW
+            )
+            context.getSystemService(NotificationManager::class.java)
+                ?.createNotificationChannel(channel)
+        }
+
+        val notification = NotificationCompat.Builder(context, WATCH_CHANNEL_ID)
+            .setSmallIcon(android.R.drawable.ic_menu_view)
+            .setContentTitle("Watching folders for screenshots")
+            .setPriority(NotificationCompat.PRIORITY_LOW)
+            .setOngoing(true)
+            .build()
+
+        return ForegroundInfo(1004, notification)
+    }
+}
@@ -0,0 +1,16 @@
+package me.vivekanand.android_ocrsample
+
+import android.graphics.Bitmap
+import java.io.Closeable
+
+/**
+ * A text recognizer. Instances are expensive to set up (models, trained data, sessions), so
+ * they are created once by an [EnginePool] and reused. They are not thread-safe: the pool
+ * hands each instance to one caller at a time.
+ */
+interface OcrEngine : Closeable {
+    val name: String
+
+    /** Returns the recognised text, or null when nothing was found. */
+    fun recognize(bitmap: Bitmap): String?
+}
@@ -0,0 +1,40 @@
+package me.vivekanand.android_ocrsample
+
+import android.content.ComponentCallbacks2
+import android.content.Context
+import android.content.res.Configuration
+import androidx.startup.Initializer
+import java.util.concurrent.Executors
+
+class OcrEngineInitializer : Initializer<Unit> {
+    override fun create(context: Context) {
+        val appContext = context.applicationContext
+        appContext.registerComponentCallbacks(object : ComponentCallbacks2 {
+            override fun onTrimMemory(level: Int) {
+                // UI_HIDDEN and BACKGROUND alone keep the engines warm for the next trigger.
+                if (level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW ||
+                    level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL ||
+                    level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                ) {
+                    OcrEngines.trimMemory()
+                    BitmapPool.clear()
+                }
+            }
+
+            override fun onConfigurationChanged(newConfig: Configuration) = Unit
+
+            @Deprecated("Deprecated in Java")
+            override fun onLowMemory() {
+                OcrEngines.trimMemory()
+                BitmapPool.clear()
+            }
+        })
+        // Engine set-up (model load, trained data) happens off the main thread.
+        Executors.newSingleThreadExecutor().apply {
+            execute { OcrEngines.pool(appContext, OcrEngines.selected(appContext)).warmUp() }
+            shutdown()
+        }
+    }
+
+    override fun dependencies(): List<Class<out Initializer<*>>> = emptyList()
+}
@@ -0,0 +1,111 @@
+package me.vivekanand.android_ocrsample
+
+import android.content.Context
+import android.graphics.Bitmap
+import android.util.Log
+import kotlinx.coroutines.runBlocking
+//import com.google.mlkit.vision.common.InputImage
+//import com.google.mlkit.vision.text.TextRecognition
+//import com.google.mlkit.vision.text.TextRecognizer
+//import com.google.mlkit.vision.text.latin.TextRecognizerOptions
+//import com.google.android.gms.tasks.Tasks
+//import com.googlecode.tesseract.android.TessBaseAPI
+//import java.io.File
+
+/** Engine selection (the "ocr_engine" pref) and the process-wide engine pools. */
+object OcrEngines {
+    private const val TAG = "OcrEngines"
+
+    enum class Kind(val prefValue: String) {
+        CLOUD_VISION("cloud_vision"),
+        TESSERACT("tesseract"),
+        ML_KIT("mlkit");
+
+        companion object {
+            fun from(value: String?): Kind = entries.firstOrNull { it.prefValue == value } ?: CLOUD_VISION
+        }
+    }
+
+    private val pools = HashMap<Kind, EnginePool<OcrEngine>>()
+
+    @JvmStatic
+    fun selected(context: Context): Kind = Kind.from(
+        context.getSharedPreferences("ocr_prefs", Context.MODE_PRIVATE).getString("ocr_engine", null)
+    )
+
+    fun pool(context: Context, kind: Kind): EnginePool<OcrEngine> = synchronized(pools) {
+        val appContext = context.applicationContext
+        pools.getOrPut(kind) { EnginePool { create(appContext, kind) } }
+    }
+
+    @JvmStatic
+    fun recognizeBlocking(context: Context, bitmap: Bitmap): String? = runBlocking {
+        pool(context, selected(context)).use { it.recognize(bitmap) }
+    }
+
+    fun trimMemory() {
+        val all = synchronized(pools) { pools.values.toList() }
+        all.forEach { it.trim() }
+    }
+
+    private fun create(context: Context, kind: Kind): OcrEngine = when (kind) {
+        Kind.CLOUD_VISION -> CloudVisionEngine(context)
+        // Their dependencies are commented out in app/build.gradle; see the engines below.
+        Kind.TESSERACT, Kind.ML_KIT -> {
+            Log.w(TAG, "${kind.prefValue} is not bundled in this build, using Cloud Vision")
+            CloudVisionEngine(context)
+        }
+    }
+}
+
+class CloudVisionEngine(context: Context) : OcrEngine {
+    private val prefs = context.getSharedPreferences("ocr_prefs", Context.MODE_PRIVATE)
+    private val client = CloudVisionClient(RequestScheduler.Priority.INTERACTIVE)
+
+    override val name = "Cloud Vision"
+
+    override fun recognize(bitmap: Bitmap): String? {
+        val apiKey = prefs.getString("cloud_vision_api_key", null)
+        check(!apiKey.isNullOrBlank()) { "Cloud Vision API key required" }
+        return client.annotate(apiKey, listOf(BitmapPayload(bitmap))).firstOrNull()?.text
+    }
+
+    override fun close() = Unit
+}
+
+/*
+class TesseractEngine(context: Context) : OcrEngine {
+    // Trained data is copied and the native API initialised once per pooled instance.
+    private val api = TessBaseAPI().apply {
+        val dir = context.filesDir
+        val tessData = File(dir, "tessdata/eng.traineddata")
+        if (!tessData.exists()) {
+            tessData.parentFile?.mkdirs()
+            context.assets.open("tessdata/eng.traineddata").use { input ->
+                tessData.outputStream().use { input.copyTo(it) }
+            }
+        }
+        init(dir.absolutePath, "eng")
+    }
+
+    override val name = "Tesseract"
+
+    override fun recognize(bitmap: Bitmap): String? {
+        api.setImage(bitmap)
+        return api.utF8Text.also { api.clear() }
+    }
+
+    override fun close() = api.end()
+}
+
+class MlKitEngine : OcrEngine {
+    private val recognizer: TextRecognizer = TextRecognition.getClient(TextRecognizerOptions.Builder().build())
+
+    override val name = "ML Kit"
+
+    override fun recognize(bitmap: Bitmap): String? =
+        Tasks.await(recognizer.process(InputImage.fromBitmap(bitmap, 0))).text
+
+    override fun close() = recognizer.close()
+}
+*/
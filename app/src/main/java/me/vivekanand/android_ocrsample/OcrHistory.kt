@@ -0,0 +1,198 @@
+package me.vivekanand.android_ocrsample
+
+import android.content.Context
+import android.database.Cursor
+import android.database.sqlite.SQLiteDatabase
+import android.database.sqlite.SQLiteOpenHelper
+import android.util.Log
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+
+/**
+ * Every OCR result, kept for later search. Rows live in `history`, with an FTS4 index over
+ * their text that is kept in sync by triggers (external content, so the text is stored once).
+ *
+ * [record] only queues the row. A single writer thread inserts queued rows in one transaction
+ * per batch, after [LINGER_MS] or once [MAX_BATCH] rows are waiting. Reads use keyset paging:
+ * pass the last id of the previous page as `beforeId`.
+ */
+class OcrHistory internal constructor(context: Context, name: String?) :
+    SQLiteOpenHelper(context.applicationContext, name, null, VERSION) {
+
+    data class Entry(
+        val id: Long,
+        /** A short excerpt; search results mark matches with [ and ]. See [text] for the full text. */
+        val preview: String,
+        val source: String?,
+        val engine: String,
+        val createdAt: Long,
+        val totalMillis: Long,
+    )
+
+    private class Pending(val text: String, val source: String?, val engine: String, val createdAt: Long, val totalMillis: Long)
+
+    private val writer: ScheduledExecutorService = Executors.newSingleThreadScheduledExecutor { runnable ->
+        Thread(runnable, "ocr-history-writer")
+    }
+    private val pending = ArrayList<Pending>()
+
+    override fun onConfigure(db: SQLiteDatabase) {
+        db.enableWriteAheadLogging()
+    }
+
+    override fun onCreate(db: SQLiteDatabase) {
+        db.execSQL(
+            "CREATE TABLE history (_id INTEGER PRIMARY KEY, text TEXT NOT NULL, source TEXT, " +
+                "engine TEXT NOT NULL, created_at INTEGER NOT NULL, total_ms INTEGER NOT NULL)"
+        )
+        db.execSQL("CREATE VIRTUAL TABLE history_fts USING fts4(content=\"history\", text)")
+        db.execSQL(
+            "CREATE TRIGGER history_ai AFTER INSERT ON history BEGIN " +
+                "INSERT INTO history_fts(docid, text) VALUES (new._id, new.text); END"
+        )
+        db.execSQL(
+            "CREATE TRIGGER history_bd BEFORE DELETE ON history BEGIN " +
+                "DELETE FROM history_fts WHERE docid = old._id; END"
+        )
+    }
+
+    override fun onUpgrade(db: SQLiteDatabase, oldVersion: Int, newVersion: Int) = Unit
+
+    /** Queues a result for insertion; safe to call from any thread, including the main one. */
+    @JvmOverloads
+    fun record(
+        text: String,
+        source: String?,
+        engine: String,
+        totalMillis: Long,
+        createdAt: Long = System.currentTimeMillis(),
+    ) {
+        val size = synchronized(pending) {
+            pending.add(Pending(text, source, engine, createdAt, totalMillis))
+            pending.size
+        }
+        when {
+            size == MAX_BATCH -> writer.execute(::drain)
+            size == 1 -> writer.schedule(::drain, LINGER_MS, TimeUnit.MILLISECONDS)
+        }
+    }
+
+    /** Blocks until every queued row is written. */
+    fun flush() {
+        writer.submit(::drain).get()
+    }
+
+    private fun drain() {
+        val batch = synchronized(pending) {
+            if (pending.isEmpty()) return
+            ArrayList(pending).also { pending.clear() }
+        }
+        try {
+            insertAll(batch)
+        } catch (e: Exception) {
+            Log.e(TAG, "Dropped ${batch.size} history rows: ${e.message}")
+        }
+    }
+
+    private fun insertAll(batch: List<Pending>) {
+        val db = writableDatabase
+        db.beginTransaction()
+        try {
+            db.compileStatement(
+                "INSERT INTO history (text, source, engine, created_at, total_ms) VALUES (?, ?, ?, ?, ?)"
+            ).use { insert ->
+                for (row in batch) {
+                    insert.bindString(1, row.text)
+                    if (row.source == null) insert.bindNull(2) else insert.bindString(2, row.source)
+                    insert.bindString(3, row.engine)
+                    insert.bindLong(4, row.createdAt)
+                    insert.bindLong(5, row.totalMillis)
+                    insert.executeInsert()
+                    insert.clearBindings()
+                }
+            }
+            db.setTransactionSuccessful()
+        } finally {
+            db.endTransaction()
+        }
+    }
+
+    @JvmOverloads
+    fun recent(beforeId: Long = Long.MAX_VALUE, limit: Int = PAGE_SIZE): List<Entry> =
+        readableDatabase.rawQuery(
+            "SELECT _id, substr(text, 1, $PREVIEW_CHARS), source, engine, created_at, total_ms " +
+                "FROM history WHERE _id < ? ORDER BY _id DESC LIMIT ?",
+            arrayOf(beforeId.toString(), limit.toString())
+        ).use { readEntries(it) }
+
+    /** Newest-first matches for [query]; falls back to [recent] when it has no searchable terms. */
+    @JvmOverloads
+    fun search(query: String, beforeId: Long = Long.MAX_VALUE, limit: Int = PAGE_SIZE): List<Entry> {
+        val match = ftsQuery(query) ?: return recent(beforeId, limit)
+        // ORDER BY docid DESC walks the doclist backwards, so LIMIT stops the scan early and
+        // snippets are only built for the rows returned.
+        return readableDatabase.rawQuery(
+            "SELECT h._id, snippet(history_fts, '[', ']', '…', -1, 12), h.source, h.engine, " +
+                "h.created_at, h.total_ms FROM history_fts JOIN history h ON h._id = history_fts.docid " +
+                "WHERE history_fts MATCH ? AND history_fts.docid < ? ORDER BY history_fts.docid DESC LIMIT ?",
+            arrayOf(match, beforeId.toString(), limit.toString())
+        ).use { readEntries(it) }
+    }
+
+    fun text(id: Long): String? =
+        readableDatabase.rawQuery("SELECT text FROM history WHERE _id = ?", arrayOf(id.toString()))
+            .use { if (it.moveToFirst()) it.getString(0) else null }
+
+    fun count(): Long = readableDatabase.compileStatement("SELECT count(*) FROM history").use { it.simpleQueryForLong() }
+
+    private fun readEntries(cursor: Cursor): List<Entry> {
+        val entries = ArrayList<Entry>(cursor.count)
+        while (cursor.moveToNext()) {
+            entries += Entry(
+                id = cursor.getLong(0),
+                preview = cursor.getString(1),
+                source = cursor.getString(2),
+                engine = cursor.getString(3),
+                createdAt = cursor.getLong(4),
+                totalMillis = cursor.getLong(5),
+            )
+        }
+        return entries
+    }
+
+    override fun close() {
+        writer.submit(::drain)
+        writer.shutdown()
+        writer.awaitTermination(5, TimeUnit.SECONDS)
+        super.close()
+    }
+
+    companion object {
+        private const val TAG = "OcrHistory"
+        private const val VERSION = 1
+        const val PAGE_SIZE = 50
+        private const val PREVIEW_CHARS = 160
+        private const val MAX_BATCH = 200
+        private const val LINGER_MS = 500L
+
+        @Volatile
+        private var instance: OcrHistory? = null
+
+        @JvmStatic
+        fun get(context: Context): OcrHistory = instance ?: synchronized(this) {
+            instance ?: OcrHistory(context, "ocr_history.db").also { instance = it }
+        }
+
+        /**
+         * Turns free text into an FTS4 MATCH expression: every word must appear, and the last
+         * one may be a prefix (the user is probably still typing it). Operators and quotes in
+         * the input are treated as plain words. Null if nothing searchable is left.
+         */
+        fun ftsQuery(input: String): String? {
+            val terms = input.lowercase().split(Regex("[^\\p{L}\\p{N}]+")).filter { it.isNotEmpty() }
+            if (terms.isEmpty()) return null
+            return terms.dropLast(1).joinToString("") { "$it " } + terms.last() + "*"
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package me.vivekanand.android_ocrsample
+
+import android.content.Context
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+
+/**
+ * In-process job queue for OCR triggers. Jobs start immediately on an IO coroutine, with no
+ * activity launch or WorkManager database round trip in between.
+ */
+object OcrJobQueue {
+    private const val MAX_CONCURRENT_JOBS = 4
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private val permits = Semaphore(MAX_CONCURRENT_JOBS)
+
+    fun submit(context: Context, paths: Array<String>, regions: String? = null, onDone: () -> Unit = {}) {
+        val processor = OcrProcessor(context)
+        scope.launch {
+            try {
+                permits.withPermit { processor.run(paths, regions) }
+            } finally {
+                onDone()
+            }
+        }
+    }
+}
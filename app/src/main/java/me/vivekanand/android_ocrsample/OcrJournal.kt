@@ -0,0 +1,154 @@
+package me.vivekanand.android_ocrsample
+
+import android.content.Context
+import androidx.work.Constraints
+import androidx.work.ExistingWorkPolicy
+import androidx.work.NetworkType
+import androidx.work.OneTimeWorkRequestBuilder
+import androidx.work.WorkManager
+import okhttp3.MediaType.Companion.toMediaType
+import okhttp3.RequestBody
+import okhttp3.RequestBody.Companion.asRequestBody
+import okio.buffer
+import okio.sink
+import java.io.File
+import java.io.IOException
+import java.util.Properties
+import java.util.concurrent.TimeUnit
+import kotlin.random.Random
+
+/**
+ * Durable journal of failed Cloud Vision requests. Each entry stores the fully encoded
+ * images:annotate body on disk. A retry streams it from the file and never decodes,
+ * compresses or Base64-encodes the image again. Entries are keyed by the image's cache key,
+ * so repeated failures for the same image collapse into one job. Each job carries its own
+ * next-attempt time, so one retry run only replays the jobs whose backoff has elapsed.
+ */
+class OcrJournal(
+    private val dir: File,
+    private val random: Random = Random.Default,
+    private val clock: () -> Long = System::currentTimeMillis,
+) {
+    /** [broadcast] is false for jobs whose answer only belongs in the cache, e.g. one crop region. */
+    class Job(
+        val id: String,
+        val imagePath: String,
+        val attempts: Int,
+        val nextAttemptAt: Long,
+        val body: File,
+        val broadcast: Boolean = true,
+    )
+
+    init {
+        dir.mkdirs()
+    }
+
+    /** Returns false when a job for [id] is already journaled. */
+    @Synchronized
+    @JvmOverloads
+    fun persist(id: String, imagePath: String, body: RequestBody, broadcast: Boolean = true): Boolean {
+        val meta = File(dir, "$id.meta")
+        if (meta.exists()) return false
+        val bodyFile = File(dir, "$id.body")
+        bodyFile.sink().buffer().use { body.writeTo(it) }
+        writeMeta(meta, imagePath, 0, clock() + backoffMillis(0), broadcast)
+        return true
+    }
+
+    @Synchronized
+    fun pending(): List<Job> = dir.listFiles { f -> f.name.endsWith(".meta") }.orEmpty()
+        .mapNotNull { meta ->
+            val id = meta.name.removeSuffix(".meta")
+            val body = File(dir, "$id.body")
+            if (!body.exists()) {
+                meta.delete()
+                return@mapNotNull null
+            }
+            val props = Properties().apply { meta.inputStream().use { load(it) } }
+            Job(
+                id,
+                props.getProperty("path", ""),
+                props.getProperty("attempts", "0").toInt(),
+                props.getProperty("next_attempt_at", "0").toLong(),
+                body,
+                props.getProperty("broadcast", "true").toBoolean(),
+            )
+        }
+        .sortedBy { it.attempts }
+
+    /** Jobs whose backoff has elapsed. */
+    fun due(): List<Job> = clock().let { now -> pending().filter { it.nextAttemptAt <= now } }
+
+    /** Delay until the earliest pending job is due, or null when the journal is empty. */
+    fun nextDueInMillis(): Long? =
+        pending().minOfOrNull { it.nextAttemptAt }?.let { (it - clock()).coerceAtLeast(0) }
+
+    fun body(job: Job): RequestBody = job.body.asRequestBody(JSON)
+
+    @Synchronized
+    fun recordFailure(job: Job): Int {
+        val attempts = job.attempts + 1
+        writeMeta(File(dir, "${job.id}.meta"), job.imagePath, attempts, clock() + backoffMillis(attempts), job.broadcast)
+        return attempts
+    }
+
+    @Synchronized
+    fun complete(job: Job) {
+        File(dir, "${job.id}.meta").delete()
+        job.body.delete()
+    }
+
+    /** Exponential backoff with full jitter: uniform in [0, min(max, base * 2^attempt)]. */
+    fun backoffMillis(attempt: Int): Long {
+        val ceiling = (BASE_BACKOFF_MILLIS shl attempt.coerceIn(0, 20)).coerceAtMost(MAX_BACKOFF_MILLIS)
+        return random.nextLong(ceiling + 1)
+    }
+
+    private fun writeMeta(meta: File, imagePath: String, attempts: Int, nextAttemptAt: Long, broadcast: Boolean) {
+        val props = Properties().apply {
+            setProperty("path", imagePath)
+            setProperty("attempts", attempts.toString())
+            setProperty("next_attempt_at", nextAttemptAt.toString())
+            setProperty("broadcast", broadcast.toString())
+        }
+        val tmp = File(dir, meta.name + ".tmp")
+        tmp.outputStream().use { props.store(it, null) }
+        tmp.renameTo(meta)
+    }
+
+    companion object {
+        const val BASE_BACKOFF_MILLIS = 30_000L
+        const val MAX_BACKOFF_MILLIS = 60L * 60 * 1000
+        const val MAX_ATTEMPTS = 8
+        private const val RETRY_WORK = "ocr_journal_retry"
+        private val JSON = "application/json; charset=utf-8".toMediaType()
+
+        @Volatile
+        private var instance: OcrJournal? = null
+
+        fun get(context: Context): OcrJournal = instance ?: synchronized(this) {
+            instance ?: OcrJournal(File(context.filesDir, "ocr_journal")).also { instance = it }
+        }
+
+        /** Client errors will fail again unchanged; everything else is worth another try. */
+        fun isRetryable(e: Throwable): Boolean = when (e) {
+            is VisionHttpException -> e.code == 429 || e.code >= 500
+            is IOException -> true
+            else -> false
+        }
+
+        /**
+         * There is only ever one retry worker. New failures use [ExistingWorkPolicy.KEEP] so they
+         * never stack runs. The worker itself passes APPEND_OR_REPLACE to queue its single successor.
+         */
+        @JvmOverloads
+        fun scheduleRetry(context: Context, delayMillis: Long, policy: ExistingWorkPolicy = ExistingWorkPolicy.KEEP) {
+            val request = OneTimeWorkRequestBuilder<OcrRetryWorker>()
+                .setConstraints(Constraints.Builder().setRequiredNetworkType(NetworkType.CONNECTED).build())
+                .setInitialDelay(delayMillis, TimeUnit.MILLISECONDS)
+                .build()
+            WorkManager.getInstance(context)
+                .enqueueUniqueWork(RETRY_WORK, policy, request)
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package me.vivekanand.android_ocrsample
+
+import android.os.Build
+import android.os.Trace
+import me.vivekanand.ocrcore.StageHistogram
+import okhttp3.Call
+import okhttp3.EventListener
+import okhttp3.Response
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Process-wide OCR timings (microseconds, one [StageHistogram] per stage) and counters.
+ * Each timed block is also a `Trace` section, so it shows up in system traces.
+ */
+object OcrMetrics {
+    enum class Stage(val traceName: String) {
+        DECODE("ocr:decode"),
+        /** JPEG compress + Base64 + JSON, streamed into the socket together. */
+        ENCODE("ocr:encode"),
+        /** End of the request body to the response headers: upload tail plus server time. */
+        NETWORK("ocr:network"),
+        PARSE("ocr:parse"),
+        BROADCAST("ocr:broadcast"),
+        TOTAL("ocr:total"),
+    }
+
+    private val histograms = Stage.entries.associateWith { StageHistogram() }
+    val bytesUploaded = AtomicLong()
+    val bytesReceived = AtomicLong()
+    val retries = AtomicLong()
+    val cacheHits = AtomicLong()
+    /** Uploads that sent the original file bytes instead of a re-encoded bitmap. */
+    val passThroughUploads = AtomicLong()
+    /** Incremental runs that uploaded only changed regions, and those that uploaded nothing. */
+    val incrementalRuns = AtomicLong()
+    val incrementalUnchanged = AtomicLong()
+    private val asyncCookies = AtomicInteger()
+
+    inline fun <T> time(stage: Stage, block: () -> T): T {
+        val start = start(stage)
+        try {
+            return block()
+        } finally {
+            stop(stage, start)
+        }
+    }
+
+    /**
+     * Like [time] but without a Trace section, for blocks that suspend: a section must end
+     * on the thread that began it.
+     */
+    inline fun <T> measure(stage: Stage, block: () -> T): T {
+        val start = System.nanoTime()
+        try {
+            return block()
+        } finally {
+            record(stage, System.nanoTime() - start)
+        }
+    }
+
+    /** Java-friendly form of [time]; pass the returned value to [stop] on the same thread. */
+    @JvmStatic
+    fun start(stage: Stage): Long {
+        Trace.beginSection(stage.traceName)
+        return System.nanoTime()
+    }
+
+    @JvmStatic
+    fun stop(stage: Stage, startNanos: Long) {
+        record(stage, System.nanoTime() - startNanos)
+        Trace.endSection()
+    }
+
+    fun record(stage: Stage, nanos: Long) {
+        histograms.getValue(stage).record(nanos / 1_000)
+    }
+
+    fun histogram(stage: Stage): StageHistogram = histograms.getValue(stage)
+
+    fun dump(): String = buildString {
+        append("stage          count      p50_us      p95_us      p99_us\n")
+        for ((stage, histogram) in histograms) {
+            append(
+                String.format(
+                    java.util.Locale.US, "%-10s %9d %11d %11d %11d\n", stage.name.lowercase(), histogram.count(),
+                    histogram.percentile(0.50), histogram.percentile(0.95), histogram.percentile(0.99)
+                )
+            )
+        }
+        append("bytes_uploaded ").append(bytesUploaded.get()).append('\n')
+        append("bytes_received ").append(bytesReceived.get()).append('\n')
+        append("retries ").append(retries.get()).append('\n')
+        append("hedges ").append(CloudVisionClient.hedges.get()).append('\n')
+        append("cache_hits ").append(cacheHits.get()).append('\n')
+        append("coalesced ").append(OcrProcessor.flights.joins.get()).append('\n')
+        append("superseded ").append(OcrProcessor.flights.supersedes.get()).append('\n')
+        append("pass_through_uploads ").append(passThroughUploads.get()).append('\n')
+        append("incremental_runs ").append(incrementalRuns.get()).append('\n')
+        append("incremental_unchanged ").append(incrementalUnchanged.get()).append('\n')
+        RequestScheduler.shared?.let { scheduler ->
+            RequestScheduler.Priority.entries.forEach {
+                append("queue_depth_").append(it.name.lowercase()).append(" ").append(scheduler.queueDepth(it)).append('\n')
+            }
+            append("shed ").append(scheduler.shedCount.get()).append('\n')
+        }
+    }
+
+    fun reset() {
+        histograms.values.forEach { it.reset() }
+        listOf(bytesUploaded, bytesReceived, retries, cacheHits, passThroughUploads, incrementalRuns, incrementalUnchanged).forEach { it.set(0) }
+    }
+
+    /** Feeds byte counters and the NETWORK stage from OkHttp's per-call events. */
+    val eventListenerFactory = EventListener.Factory { NetworkListener() }
+
+    private class NetworkListener : EventListener() {
+        private var bodyEnd = 0L
+        private var cookie = 0
+
+        override fun requestBodyEnd(call: Call, byteCount: Long) {
+            bytesUploaded.addAndGet(byteCount)
+            bodyEnd = System.nanoTime()
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                cookie = asyncCookies.incrementAndGet()
+                Trace.beginAsyncSection(Stage.NETWORK.traceName, cookie)
+            }
+        }
+
+        override fun responseHeadersEnd(call: Call, response: Response) {
+            if (bodyEnd == 0L) return
+            record(Stage.NETWORK, System.nanoTime() - bodyEnd)
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                Trace.endAsyncSection(Stage.NETWORK.traceName, cookie)
+            }
+            bodyEnd = 0L
+        }
+
+        override fun responseBodyEnd(call: Call, byteCount: Long) {
+            bytesReceived.addAndGet(byteCount)
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package me.vivekanand.android_ocrsample
+
+import android.content.Context
+import android.content.Intent
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.coroutineScope
+import kotlinx.coroutines.ensureActive
+import kotlinx.coroutines.withContext
+import java.io.File
+import kotlin.coroutines.coroutineContext
+import me.vivekanand.ocrcore.AnnotateRequestBody
+import me.vivekanand.ocrcore.CropRegion
+import me.vivekanand.ocrcore.ImagePayload
+import me.vivekanand.ocrcore.PixelRect
+import me.vivekanand.ocrcore.TextBlock
+
+/**
+ * The OCR run behind ACTION_OCR_PROCESS: cache lookup, batched Cloud Vision call and the
+ * result broadcast. Shared by [OcrWorker] and the direct [OcrTriggerReceiver] path.
+ * Returns false when the run should be reported as failed.
+ */
+class OcrProcessor(context: Context) {
+    private val context = context.applicationContext
+
+    /** [regionSpec] overrides the saved "crop_regions" pref; see [CropRegion] for the format. */
+    suspend fun run(paths: Array<String>, regionSpec: String? = null): Boolean = withContext(Dispatchers.IO) {
+        val prefs = context.getSharedPreferences("ocr_prefs", Context.MODE_PRIVATE)
+        val apiKey = prefs.getString("cloud_vision_api_key", null)
+        val engine = OcrEngines.selected(context)
+
+        if (engine == OcrEngines.Kind.CLOUD_VISION && apiKey.isNullOrBlank()) {
+            notifyError("API key not found. #GCERR2")
+            OcrResultBroadcaster.send(context, "error")
+            return@withContext false
+        }
+
+        val spec = regionSpec ?: prefs.getString("crop_regions", null)
+        val regions = try {
+            CropRegion.parseAll(spec)
+        } catch (e: IllegalArgumentException) {
+            notifyError("Bad crop regions: ${e.message} #GCERR7")
+            OcrResultBroadcaster.send(context, "error")
+            return@withContext false
+        }
+
+        val pixelBudget = BitmapDecoder.pixelBudget(context)
+        val policy = SingleFlight.Policy.from(prefs.getString("inflight_policy", null))
+        // Every image goes through the shared batcher, so they share one annotate call.
+        coroutineScope {
+            paths.map { path ->
+                async {
+                    // Repeated triggers for the same image attach to the run already in flight;
+                    // that run sends the one result broadcast.
+                    val key = "$path|${cacheParams(pixelBudget, engine)}|${spec.orEmpty()}"
+                    flights.run(key, identityOf(path), policy) {
+                        OcrMetrics.measure(OcrMetrics.Stage.TOTAL) {
+                            if (regions.isEmpty()) process(path, pixelBudget, engine)
+                            else processRegions(path, regions, spec.orEmpty(), pixelBudget, engine)
+                        }
+                    }
+                }
+            }.awaitAll()
+        }.all { it }
+    }
+
+    private fun identityOf(path: String): String = File(path).let { "${it.length()}:${it.lastModified()}" }
+
+    private suspend fun process(imagePath: String, pixelBudget: Int, engine: OcrEngines.Kind): Boolean {
+        val start = System.nanoTime()
+        val cache = OcrResultCache.get(context)
+        val imageFile = File(imagePath)
+        val cacheKey = if (imageFile.exists()) cache.keyFor(imageFile, cacheParams(pixelBudget, engine)) else null
+        val cached = cacheKey?.let { cache.get(it) }
+        if (cached != null) {
+            OcrMetrics.cacheHits.incrementAndGet()
+            OcrResultBroadcaster.send(context, cached, imagePath)
+            recordHistory(cached, imagePath, engine, start)
+            return true
+        }
+
+        if (!imageFile.exists() || !BitmapDecoder.isDecodable(imagePath)) {
+            //notifyError("Image not found or unreadable. #GCERR1")
+            OcrResultBroadcaster.send(context, "error", imagePath)
+            return false
+        }
+
+        val prefs = context.getSharedPreferences("ocr_prefs", Context.MODE_PRIVATE)
+        // Re-reads only what changed since the last frame written to this path.
+        val incremental = prefs.getBoolean("incremental_ocr", false)
+        val wordBoxes = prefs.getBoolean("result_word_boxes", false)
+        return try {
+            var words: List<TextBlock>? = null
+            val recognized = if (engine == OcrEngines.Kind.CLOUD_VISION && incremental) {
+                val apiKey = prefs.getString("cloud_vision_api_key", null).orEmpty()
+                val result = IncrementalOcr.recognize(imagePath, apiKey, pixelBudget)
+                if (wordBoxes) words = result.words
+                result.text
+            } else if (engine == OcrEngines.Kind.CLOUD_VISION) {
+                val result = AnnotateBatcher.get(context).submit(ImagePayloads.forFile(imagePath, pixelBudget))
+                words = result.words
+                result.text
+            } else {
+                recognizeOnDevice(imagePath, pixelBudget, engine)
+            }
+            val text = recognized ?: "No text found"
+            cacheKey?.let { cache.put(it, text) }
+            // A run superseded while its call was out must not broadcast over its successor.
+            coroutineContext.ensureActive()
+            OcrResultBroadcaster.send(context, text, imagePath, words = words)
+            if (recognized != null) recordHistory(recognized, imagePath, engine, start)
+            true
+
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: VisionHttpException) {
+            journalForRetry(imagePath, pixelBudget, engine, cacheKey, e)
+            notifyError("HTTP error: ${e.code} #GCERR3")
+            OcrResultBroadcaster.send(context, "error", imagePath)
+            false
+        } catch (e: java.net.SocketTimeoutException) {
+            journalForRetry(imagePath, pixelBudget, engine, cacheKey, e)
+            OcrResultBroadcaster.send(context, "timeout", imagePath)
+            notifyError("OCR request timed out. #GCERR5")
+            true
+        } catch (e: LoadShedException) {
+            // Over quota with a full queue; the journal replays it once things calm down.
+            journalForRetry(imagePath, pixelBudget, engine, cacheKey, e)
+            notifyError("Deferred under load: ${e.message} #GCERR8")
+            OcrResultBroadcaster.send(context, "error", imagePath)
+            false
+        } catch (e: Exception) {
+            journalForRetry(imagePath, pixelBudget, engine, cacheKey, e)
+            notifyError("Exception: ${e.message} #GCERR4")
+            OcrResultBroadcaster.send(context, "error", imagePath)
+            false
+        }
+    }
+
+    /**
+     * Recognises only the given regions. Each is decoded from the file through a
+     * BitmapRegionDecoder, so the full image is never held, and each result is broadcast
+     * under its label. Region results are cached one entry per region.
+     */
+    private suspend fun processRegions(
+        imagePath: String,
+        regions: List<CropRegion>,
+        spec: String,
+        pixelBudget: Int,
+        engine: OcrEngines.Kind,
+    ): Boolean {
+        val start = System.nanoTime()
+        val cache = OcrResultCache.get(context)
+        val imageFile = File(imagePath)
+        val decoder = if (imageFile.exists()) BitmapDecoder.newRegionDecoder(imagePath) else null
+        if (decoder == null) {
+            OcrResultBroadcaster.send(context, "error", imagePath)
+            return false
+        }
+        val shared = SharedRegionDecoder(decoder)
+
+        return try {
+            val baseKey = cache.keyFor(imageFile, cacheParams(pixelBudget, engine) + ";regions=$spec")
+            val rects = regions.map { it.resolve(decoder.width, decoder.height) }
+            // Every region runs to completion so each failed one can be journaled on its own.
+            val outcomes = coroutineScope {
+                rects.mapIndexed { index, rect ->
+                    async {
+                        val key = "${baseKey}_$index"
+                        runCatching {
+                            cache.get(key) ?: run {
+                                val text = if (rect == null) "" else recognizeRegion(shared, rect, pixelBudget, engine) ?: ""
+                                cache.put(key, text)
+                                text
+                            }
+                        }
+                    }
+                }.awaitAll()
+            }
+            outcomes.forEachIndexed { index, outcome ->
+                val error = outcome.exceptionOrNull() as? Exception ?: return@forEachIndexed
+                val rect = rects[index] ?: return@forEachIndexed
+                // Quiet job: a lone region's text isn't a result, so the retry only fills the cache
+                // and the next trigger for this image reads it from there.
+                journalForRetry(imagePath, engine, "${baseKey}_$index", error, broadcast = false) {
+                    RegionPayload(shared, rect, pixelBudget)
+                }
+            }
+            val texts = outcomes.map { it.getOrThrow() }
+            val labelled = regions.map { it.label }.zip(texts)
+            val combined = labelled.joinToString("\n") { (label, text) -> "[$label]\n$text" }
+            coroutineContext.ensureActive()
+            OcrResultBroadcaster.send(context, combined, imagePath, labelled)
+            recordHistory(combined, imagePath, engine, start)
+            true
+
+        } catch (e: CancellationException) {
+            throw e
+        } catch (e: VisionHttpException) {
+            notifyError("HTTP error: ${e.code} #GCERR3")
+            OcrResultBroadcaster.send(context, "error", imagePath)
+            false
+        } catch (e: java.net.SocketTimeoutException) {
+            OcrResultBroadcaster.send(context, "timeout", imagePath)
+            notifyError("OCR request timed out. #GCERR5")
+            true
+        } catch (e: LoadShedException) {
+            // The shed regions are already journaled above and replay once things calm down.
+            notifyError("Deferred under load: ${e.message} #GCERR8")
+            OcrResultBroadcaster.send(context, "error", imagePath)
+            false
+        } catch (e: Exception) {
+            notifyError("Exception: ${e.message} #GCERR4")
+            OcrResultBroadcaster.send(context, "error", imagePath)
+            false
+        } finally {
+            shared.release()
+        }
+    }
+
+    private suspend fun recognizeRegion(
+        shared: SharedRegionDecoder, rect: PixelRect, pixelBudget: Int, engine: OcrEngines.Kind
+    ): String? {
+        if (engine == OcrEngines.Kind.CLOUD_VISION) {
+            return AnnotateBatcher.get(context).submit(RegionPayload(shared, rect, pixelBudget)).text
+        }
+        val bitmap = withContext(BitmapDecoder.dispatcher) {
+            BitmapDecoder.decodeRegion(shared.decoder, rect, pixelBudget)
+        } ?: throw java.io.IOException("Unreadable region $rect")
+        return try {
+            OcrEngines.pool(context, engine).use { it.recognize(bitmap) }
+        } finally {
+            BitmapPool.put(bitmap)
+        }
+    }
+
+    private fun journalForRetry(
+        imagePath: String, pixelBudget: Int, engine: OcrEngines.Kind, cacheKey: String?, e: Exception
+    ) = journalForRetry(imagePath, engine, cacheKey, e) { ImagePayloads.forFile(imagePath, pixelBudget) }
+
+    // The body is encoded once here; every later retry streams it from the journal file.
+    private fun journalForRetry(
+        imagePath: String,
+        engine: OcrEngines.Kind,
+        cacheKey: String?,
+        e: Exception,
+        broadcast: Boolean = true,
+        payload: () -> ImagePayload,
+    ) {
+        if (engine != OcrEngines.Kind.CLOUD_VISION || cacheKey == null || !OcrJournal.isRetryable(e)) return
+        try {
+            val journal = OcrJournal.get(context)
+            val body = AnnotateRequestBody(listOf(payload()))
+            if (journal.persist(cacheKey, imagePath, body, broadcast)) {
+                OcrJournal.scheduleRetry(context, journal.nextDueInMillis() ?: 0)
+            }
+        } catch (journalError: Exception) {
+            android.util.Log.e("OcrProcessor", "Could not journal $imagePath: ${journalError.message}")
+        }
+    }
+
+    private suspend fun recognizeOnDevice(imagePath: String, pixelBudget: Int, engine: OcrEngines.Kind): String? {
+        val bitmap = withContext(BitmapDecoder.dispatcher) {
+            BitmapDecoder.decodeFile(imagePath, pixelBudget, needsColor = false)
+        } ?: throw java.io.IOException("Unreadable image: $imagePath")
+        return try {
+            OcrEngines.pool(context, engine).use { it.recognize(bitmap) }
+        } finally {
+            BitmapPool.put(bitmap)
+        }
+    }
+
+    private fun recordHistory(text: String, imagePath: String, engine: OcrEngines.Kind, startNanos: Long) {
+        OcrHistory.get(context).record(text, imagePath, engine.prefValue, (System.nanoTime() - startNanos) / 1_000_000)
+    }
+
+    private fun notifyError(message: String) {
+        NotificationHelper.postErrorNotification(context, message)
+    }
+
+    companion object {
+        const val ACTION_OCR_PROCESS = "me.vivekanand.android_ocrsample.ACTION_OCR_PROCESS"
+        const val DEFAULT_IMAGE_PATH = "/sdcard/NonSync/gctemp/g.jpg"
+//        const val DEFAULT_IMAGE_PATH = "/storage/emulated/0/NonSync/gctemp/g.jpg"
+        const val EXTRA_INPUT_PATHS = "input_paths"
+        const val EXTRA_REGIONS = "regions"
+
+        /** Process-wide, so triggers handled by different workers still meet here. */
+        val flights = SingleFlight<String, Boolean>(CoroutineScope(SupervisorJob() + Dispatchers.IO))
+
+        fun cacheParams(pixelBudget: Int, engine: OcrEngines.Kind) =
+            "TEXT_DETECTION;budget=$pixelBudget;engine=${engine.prefValue}"
+
+        // Callers may pass several images either as a String[] or an ArrayList<String>.
+        fun pathsFrom(intent: Intent): Array<String>? =
+            intent.getStringArrayExtra(EXTRA_INPUT_PATHS)
+                ?: intent.getStringArrayListExtra(EXTRA_INPUT_PATHS)?.toTypedArray()
+    }
+}
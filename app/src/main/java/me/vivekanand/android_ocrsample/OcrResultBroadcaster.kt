@@ -0,0 +1,101 @@
+package me.vivekanand.android_ocrsample
+
+import android.content.Context
+import android.content.Intent
+import android.util.Log
+import java.io.IOException
+import java.util.concurrent.CopyOnWriteArraySet
+import me.vivekanand.ocrcore.TextBlock
+
+fun interface OcrResultListener {
+    fun onResult(imagePath: String?, text: String)
+}
+
+/** Delivers results to Automagic and to any in-process listeners. */
+object OcrResultBroadcaster {
+    const val ACTION_OCR_RESULT = "com.yourapp.OCR_RESULT"
+    private const val AUTOMAGIC_PACKAGE = "ch.gridvision.ppam.androidautomagic"
+    private const val TAG = "OcrResultBroadcaster"
+
+    /**
+     * Larger results go through [OcrResultProvider] instead of the intent. Broadcast extras
+     * share a ~1 MB binder transaction with everything else in flight; past that the send fails.
+     */
+    const val INLINE_LIMIT_BYTES = 16 * 1024
+    private const val PREVIEW_CHARS = 1024
+
+    private val listeners = CopyOnWriteArraySet<OcrResultListener>()
+
+    @JvmStatic
+    fun addListener(listener: OcrResultListener) {
+        listeners.add(listener)
+    }
+
+    @JvmStatic
+    fun removeListener(listener: OcrResultListener) {
+        listeners.remove(listener)
+    }
+
+    /**
+     * [regions] are (label, text) pairs. Each is added as an `ocr_result_<label>` extra, and
+     * `ocr_regions` lists the labels in order.
+     *
+     * All texts share one [INLINE_LIMIT_BYTES] budget. A text that doesn't fit, or one with
+     * [words], is stored instead and sent as `<extra>_uri`, e.g. `ocr_result_uri` or
+     * `ocr_result_<label>_uri` (boxes as `ocr_boxes_uri`). The extra itself then holds a
+     * preview, and `<extra>_truncated` says whether it was cut.
+     */
+    fun send(
+        context: Context,
+        text: String,
+        imagePath: String? = null,
+        regions: List<Pair<String, String>>? = null,
+        words: List<TextBlock>? = null,
+    ) {
+        val start = OcrMetrics.start(OcrMetrics.Stage.BROADCAST)
+        val intent = Intent(ACTION_OCR_RESULT).apply {
+            `package` = AUTOMAGIC_PACKAGE
+            val budget = InlineBudget(INLINE_LIMIT_BYTES)
+            putResult(context, this, "ocr_result", text, words, budget)
+            if (imagePath != null) putExtra("ocr_path", imagePath)
+            if (regions != null) {
+                putExtra("ocr_regions", regions.map { it.first }.toTypedArray())
+                regions.forEach { (label, regionText) ->
+                    putResult(context, this, "ocr_result_$label", regionText, null, budget)
+                }
+            }
+        }
+        context.sendBroadcast(intent)
+        OcrMetrics.stop(OcrMetrics.Stage.BROADCAST, start)
+        listeners.forEach { it.onResult(imagePath, text) }
+    }
+
+    /** Inline bytes left in one intent, shared by the result and all its regions. */
+    private class InlineBudget(var bytes: Int)
+
+    private fun putResult(
+        context: Context, intent: Intent, extra: String, text: String, words: List<TextBlock>?, budget: InlineBudget,
+    ) {
+        // A char is at most 3 UTF-8 bytes, so most results skip the encode.
+        val bytes = if (text.length * 3 <= budget.bytes) text.length * 3 else text.toByteArray().size
+        if (words == null && bytes <= budget.bytes) {
+            budget.bytes -= bytes
+            intent.putExtra(extra, text)
+            return
+        }
+        val stored = try {
+            OcrResultProvider.store(context, text, words, AUTOMAGIC_PACKAGE)
+        } catch (e: IOException) {
+            Log.w(TAG, "Could not store $extra, sending it inline: ${e.message}")
+            intent.putExtra(extra, text)
+            return
+        }
+        intent.putExtra("${extra}_uri", stored.textUri.toString())
+        stored.boxesUri?.let { intent.putExtra("ocr_boxes_uri", it.toString()) }
+        val truncated = text.length > PREVIEW_CHARS
+        val preview = if (truncated) text.take(PREVIEW_CHARS) else text
+        budget.bytes = (budget.bytes - preview.length * 3).coerceAtLeast(0)
+        intent.putExtra(extra, preview)
+        intent.putExtra("${extra}_truncated", truncated)
+    }
+}
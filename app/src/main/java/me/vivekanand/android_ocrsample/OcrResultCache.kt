@@ -0,0 +1,129 @@
+package me.vivekanand.android_ocrsample
+
+import android.content.Context
+import java.io.File
+import java.security.MessageDigest
+import java.util.Properties
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Persistent OCR result cache keyed by SHA-256(image bytes + request parameters).
+ *
+ * A file whose path, size and mtime match the last lookup reuses the previous key without
+ * re-hashing. That fast path keeps the [maxFastPathEntries] most recently used files and
+ * drops entries whose result was evicted. Entries are evicted least-recently-used first once
+ * they exceed [maxBytes], and unconditionally after [maxAgeMillis].
+ */
+class OcrResultCache(
+    private val dir: File,
+    private val maxBytes: Long = DEFAULT_MAX_BYTES,
+    private val maxAgeMillis: Long = DEFAULT_MAX_AGE_MILLIS,
+    private val clock: () -> Long = System::currentTimeMillis,
+    private val maxFastPathEntries: Int = DEFAULT_MAX_FAST_PATH_ENTRIES,
+) {
+    val hits = AtomicLong()
+    val misses = AtomicLong()
+    internal val hashes = AtomicLong()
+
+    private val fastPathFile = File(dir, "fastpath.properties")
+    private val fastPath = object : LinkedHashMap<String, String>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, String>?) = size > maxFastPathEntries
+    }
+
+    init {
+        dir.mkdirs()
+        if (fastPathFile.exists()) {
+            val saved = Properties()
+            fastPathFile.inputStream().use { saved.load(it) }
+            saved.stringPropertyNames().forEach { fastPath[it] = saved.getProperty(it) }
+        }
+    }
+
+    @Synchronized
+    fun keyFor(image: File, params: String): String {
+        val fastKey = image.absolutePath + "|" + params
+        val stamp = "${image.length()}:${image.lastModified()}:"
+        fastPath[fastKey]?.let { if (it.startsWith(stamp)) return it.substring(stamp.length) }
+
+        val key = hash(image, params)
+        fastPath[fastKey] = stamp + key
+        saveFastPath()
+        return key
+    }
+
+    @Synchronized
+    fun get(key: String): String? {
+        val entry = File(dir, "$key.txt")
+        if (!entry.exists() || clock() - entry.lastModified() > maxAgeMillis) {
+            misses.incrementAndGet()
+            return null
+        }
+        entry.setLastModified(clock())
+        hits.incrementAndGet()
+        return entry.readText()
+    }
+
+    @Synchronized
+    fun put(key: String, text: String) {
+        File(dir, "$key.txt").apply {
+            writeText(text)
+            setLastModified(clock())
+        }
+        evict()
+    }
+
+    private fun evict() {
+        val now = clock()
+        val entries = dir.listFiles { f -> f.name.endsWith(".txt") }.orEmpty()
+            .sortedByDescending { it.lastModified() }
+        var total = 0L
+        val evicted = HashSet<String>()
+        // Region results are stored as <key>_<index>; the fast path holds the <key> part.
+        for (entry in entries) {
+            total += entry.length()
+            if (total > maxBytes || now - entry.lastModified() > maxAgeMillis) {
+                entry.delete()
+                evicted += entry.name.removeSuffix(".txt").substringBefore('_')
+            }
+        }
+        if (evicted.isNotEmpty() && fastPath.values.removeAll { it.substringAfterLast(':') in evicted }) {
+            saveFastPath()
+        }
+    }
+
+    // Bounded by maxFastPathEntries, so a rewrite stays small however many files pass through.
+    private fun saveFastPath() {
+        val saved = Properties()
+        saved.putAll(fastPath)
+        fastPathFile.outputStream().use { saved.store(it, null) }
+    }
+
+    private fun hash(image: File, params: String): String {
+        hashes.incrementAndGet()
+        val digest = MessageDigest.getInstance("SHA-256")
+        image.inputStream().use { input ->
+            val buffer = ByteArray(64 * 1024)
+            while (true) {
+                val read = input.read(buffer)
+                if (read < 0) break
+                digest.update(buffer, 0, read)
+            }
+        }
+        digest.update(params.toByteArray())
+        return digest.digest().joinToString("") { "%02x".format(it) }
+    }
+
+    companion object {
+        const val DEFAULT_MAX_BYTES = 4L * 1024 * 1024
+        const val DEFAULT_MAX_AGE_MILLIS = 7L * 24 * 60 * 60 * 1000
+        const val DEFAULT_MAX_FAST_PATH_ENTRIES = 256
+
+        @Volatile
+        private var instance: OcrResultCache? = null
+
+        @JvmStatic
+        fun get(context: Context): OcrResultCache = instance ?: synchronized(this) {
+            instance ?: OcrResultCache(File(context.cacheDir, "ocr_results")).also { instance = it }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package me.vivekanand.android_ocrsample
+
+import android.content.ContentProvider
+import android.content.ContentValues
+import android.content.Context
+import android.content.Intent
+import android.database.Cursor
+import android.database.MatrixCursor
+import android.net.Uri
+import android.os.ParcelFileDescriptor
+import android.provider.OpenableColumns
+import java.io.File
+import java.io.FileNotFoundException
+import java.util.UUID
+import me.vivekanand.ocrcore.TextBlock
+import me.vivekanand.ocrcore.WordBoxCodec
+import okio.buffer
+import okio.sink
+
+/**
+ * Serves stored OCR results read-only, so a broadcast only needs to carry a URI:
+ *
+ *     content://<package>.results/<id>.txt     UTF-8 text
+ *     content://<package>.results/<id>.boxes   word boxes in [WordBoxCodec] layout
+ *
+ * Files live in app-private storage; readers get a file descriptor, not a binder copy. A
+ * result stays readable for [RETENTION_MILLIS], however many arrive in a burst. When it is
+ * pruned, the read grant on it is revoked.
+ */
+class OcrResultProvider : ContentProvider() {
+
+    override fun onCreate(): Boolean = true
+
+    override fun openFile(uri: Uri, mode: String): ParcelFileDescriptor {
+        if (mode != "r") throw SecurityException("Results are read-only")
+        return ParcelFileDescriptor.open(fileFor(context!!, uri), ParcelFileDescriptor.MODE_READ_ONLY)
+    }
+
+    override fun query(
+        uri: Uri, projection: Array<out String>?, selection: String?, selectionArgs: Array<out String>?, sortOrder: String?,
+    ): Cursor {
+        val file = fileFor(context!!, uri)
+        val columns = projection ?: arrayOf(OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE)
+        return MatrixCursor(columns, 1).apply {
+            addRow(columns.map { column ->
+                when (column) {
+                    OpenableColumns.DISPLAY_NAME -> file.name
+                    OpenableColumns.SIZE -> file.length()
+                    else -> null
+                }
+            })
+        }
+    }
+
+    override fun getType(uri: Uri): String =
+        if (uri.lastPathSegment.orEmpty().endsWith(".txt")) "text/plain" else "application/octet-stream"
+
+    override fun insert(uri: Uri, values: ContentValues?): Uri? = throw UnsupportedOperationException()
+    override fun delete(uri: Uri, selection: String?, selectionArgs: Array<out String>?): Int = throw UnsupportedOperationException()
+    override fun update(uri: Uri, values: ContentValues?, selection: String?, selectionArgs: Array<out String>?): Int =
+        throw UnsupportedOperationException()
+
+    class Stored(val textUri: Uri, val boxesUri: Uri?)
+
+    companion object {
+        /** How long a receiver has to read a result before it may be deleted. */
+        const val RETENTION_MILLIS = 15L * 60 * 1000
+
+        // Hard cap for pathological bursts; far beyond what a receiver reads in the window.
+        private const val MAX_RESULTS = 1024
+        private val NAME = Regex("[0-9a-f-]{36}\\.(txt|boxes)")
+
+        fun authority(context: Context) = "${context.packageName}.results"
+
+        private fun dir(context: Context) = File(context.filesDir, "ocr_results").apply { mkdirs() }
+
+        private fun fileFor(context: Context, uri: Uri): File {
+            val name = uri.lastPathSegment
+            // Only our own generated names; never a path from the caller.
+            if (uri.authority != authority(context) || name == null || !NAME.matches(name)) {
+                throw FileNotFoundException(uri.toString())
+            }
+            return File(dir(context), name).takeIf { it.exists() } ?: throw FileNotFoundException(uri.toString())
+        }
+
+        /** Writes [text] (and [words] when given) and lets [grantTo] read them. */
+        @Synchronized
+        fun store(context: Context, text: String, words: List<TextBlock>?, grantTo: String): Stored {
+            val dir = dir(context)
+            val id = UUID.randomUUID().toString()
+            File(dir, "$id.txt").writeText(text)
+            val hasBoxes = words != null
+            if (words != null) File(dir, "$id.boxes").sink().buffer().use { WordBoxCodec.encode(words, it) }
+            prune(context, dir)
+
+            val stored = Stored(uriFor(context, "$id.txt"), if (hasBoxes) uriFor(context, "$id.boxes") else null)
+            try {
+                listOfNotNull(stored.textUri, stored.boxesUri).forEach {
+                    context.grantUriPermission(grantTo, it, Intent.FLAG_GRANT_READ_URI_PERMISSION)
+                }
+            } catch (e: IllegalArgumentException) {
+                // Receiver not installed; the broadcast goes nowhere anyway.
+            }
+            return stored
+        }
+
+        private fun uriFor(context: Context, name: String): Uri =
+            Uri.Builder().scheme("content").authority(authority(context)).appendPath(name).build()
+
+        private fun prune(context: Context, dir: File) {
+            val cutoff = System.currentTimeMillis() - RETENTION_MILLIS
+            val texts = dir.listFiles { f -> f.name.endsWith(".txt") }.orEmpty().sortedByDescending { it.lastModified() }
+            texts.filterIndexed { index, file -> index >= MAX_RESULTS || file.lastModified() < cutoff }.forEach { old ->
+                val id = old.name.removeSuffix(".txt")
+                for (name in listOf("$id.txt", "$id.boxes")) {
+                    val file = File(dir, name)
+                    if (!file.exists()) continue
+                    context.revokeUriPermission(uriFor(context, name), Intent.FLAG_GRANT_READ_URI_PERMISSION)
+                    file.delete()
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package me.vivekanand.android_ocrsample
+
+import android.content.Context
+import androidx.work.CoroutineWorker
+import androidx.work.ExistingWorkPolicy
+import androidx.work.WorkerParameters
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+
+/** Replays journaled requests. Runs only with connectivity; see [OcrJournal.scheduleRetry]. */
+class OcrRetryWorker(appContext: Context, params: WorkerParameters) :
+    CoroutineWorker(appContext, params) {
+
+    override suspend fun doWork(): Result = withContext(Dispatchers.IO) {
+        val journal = OcrJournal.get(applicationContext)
+        val apiKey = applicationContext.getSharedPreferences("ocr_prefs", Context.MODE_PRIVATE)
+            .getString("cloud_vision_api_key", null)
+        if (apiKey.isNullOrBlank()) return@withContext Result.failure()
+
+        val client = CloudVisionClient()
+        for (job in journal.due()) {
+            OcrMetrics.retries.incrementAndGet()
+            try {
+                val text = client.annotateBody(apiKey, journal.body(job), 1).firstOrNull()?.text ?: "No text found"
+                OcrResultCache.get(applicationContext).put(job.id, text)
+                journal.complete(job)
+                if (job.broadcast) OcrResultBroadcaster.send(applicationContext, text, job.imagePath)
+            } catch (e: Exception) {
+                val attempts = journal.recordFailure(job)
+                if (!OcrJournal.isRetryable(e) || attempts >= OcrJournal.MAX_ATTEMPTS) {
+                    journal.complete(job)
+                    NotificationHelper.postErrorNotification(
+                        applicationContext, "Retry gave up: ${e.message} #GCERR6"
+                    )
+                }
+            }
+        }
+        // Also covers jobs journaled while this run was in progress; their KEEP was a no-op.
+        journal.nextDueInMillis()?.let {
+            OcrJournal.scheduleRetry(applicationContext, it, ExistingWorkPolicy.APPEND_OR_REPLACE)
+        }
+        Result.success()
+    }
+}
@@ -0,0 +1,20 @@
+package me.vivekanand.android_ocrsample
+
+import android.content.BroadcastReceiver
+import android.content.Context
+import android.content.Intent
+
+/**
+ * Broadcast flavour of ACTION_OCR_PROCESS. Send it with the package set to this app, since
+ * implicit broadcasts are not delivered to manifest receivers. It takes the same extras as
+ * [ResultActivity] and skips both the activity launch and WorkManager scheduling.
+ */
+class OcrTriggerReceiver : BroadcastReceiver() {
+    override fun onReceive(context: Context, intent: Intent) {
+        if (intent.action != OcrProcessor.ACTION_OCR_PROCESS) return
+        val paths = OcrProcessor.pathsFrom(intent) ?: arrayOf(OcrProcessor.DEFAULT_IMAGE_PATH)
+        val pending = goAsync()
+        val regions = intent.getStringExtra(OcrProcessor.EXTRA_REGIONS)
+        OcrJobQueue.submit(context, paths, regions) { pending.finish() }
+    }
+}
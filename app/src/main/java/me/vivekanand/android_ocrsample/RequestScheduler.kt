@@ -0,0 +1,145 @@
+package me.vivekanand.android_ocrsample
+
+import android.content.Context
+import java.io.IOException
+import java.net.SocketTimeoutException
+import kotlinx.coroutines.CancellationException
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.channels.Channel
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeoutOrNull
+import java.util.concurrent.atomic.AtomicLong
+import me.vivekanand.ocrcore.TokenBucket
+
+/** A queued background call was dropped to keep the queue within capacity. */
+class LoadShedException(message: String) : IOException(message)
+
+/**
+ * Admits Cloud Vision calls through one [TokenBucket] sized to the project quota. Waiting calls
+ * are granted by priority class, interactive first. Every [agingMillis] spent waiting lifts a
+ * call one class, so background work still gets through under steady interactive load; within a
+ * class, calls go oldest first.
+ *
+ * Background calls beyond [capacity] are shed oldest first with [LoadShedException].
+ * Interactive calls are never shed.
+ */
+class RequestScheduler(
+    private val bucket: TokenBucket,
+    private val capacity: Int = DEFAULT_CAPACITY,
+    private val agingMillis: Long = DEFAULT_AGING_MILLIS,
+    scope: CoroutineScope = CoroutineScope(SupervisorJob() + Dispatchers.Default),
+    private val clockMillis: () -> Long = { System.nanoTime() / 1_000_000 },
+) {
+    enum class Priority { INTERACTIVE, AUTOMATION, BULK }
+
+    private class Waiter(val priority: Priority, val cost: Int, val enqueuedAt: Long, val seq: Long) {
+        val granted = CompletableDeferred<Unit>()
+    }
+
+    private val lock = Any()
+    private val queue = ArrayList<Waiter>()
+    private val wakeups = Channel<Unit>(Channel.CONFLATED)
+    private var nextSeq = 0L
+
+    val shedCount = AtomicLong()
+
+    init {
+        scope.launch { dispatchLoop() }
+    }
+
+    /**
+     * Suspends until the call may be sent. [cost] is the number of images it carries. With a
+     * [timeoutMillis] (> 0) the wait gives up with a [SocketTimeoutException], so it counts
+     * against the caller's own deadline. Cancelling the caller takes the call off the queue.
+     */
+    suspend fun acquire(priority: Priority, cost: Int = 1, timeoutMillis: Long = 0) {
+        if (timeoutMillis > 0) {
+            withTimeoutOrNull(timeoutMillis) { acquire(priority, cost) }
+                ?: throw SocketTimeoutException("No $priority slot within $timeoutMillis ms")
+            return
+        }
+        val waiter = synchronized(lock) {
+            Waiter(priority, cost, clockMillis(), nextSeq++).also {
+                queue += it
+                shedOverCapacity()
+            }
+        }
+        wakeups.trySend(Unit)
+        try {
+            waiter.granted.await()
+        } catch (e: CancellationException) {
+            synchronized(lock) { queue.remove(waiter) }
+            throw e
+        }
+    }
+
+    /** [acquire] for callers that can't suspend, e.g. [OcrEngine.recognize]; prefer [acquire]. */
+    fun acquireBlocking(priority: Priority, cost: Int = 1, timeoutMillis: Long = 0) =
+        runBlocking { acquire(priority, cost, timeoutMillis) }
+
+    /** Takes tokens only if nobody is queued and they are there now; for optional extra calls. */
+    fun tryAcquireNow(cost: Int = 1): Boolean = synchronized(lock) { queue.isEmpty() && bucket.tryAcquire(cost) == 0L }
+
+    fun queueDepth(): Int = synchronized(lock) { queue.size }
+
+    fun queueDepth(priority: Priority): Int = synchronized(lock) { queue.count { it.priority == priority } }
+
+    private fun shedOverCapacity() {
+        while (queue.count { it.priority != Priority.INTERACTIVE } > capacity) {
+            val oldest = queue.filter { it.priority != Priority.INTERACTIVE }.minBy { it.seq }
+            queue.remove(oldest)
+            shedCount.incrementAndGet()
+            oldest.granted.completeExceptionally(LoadShedException("Dropped ${oldest.priority} call, queue over $capacity"))
+        }
+    }
+
+    private suspend fun dispatchLoop() {
+        while (true) {
+            when (val wait = grantNext()) {
+                null -> wakeups.receive()
+                0L -> Unit
+                // A more urgent call arriving meanwhile is picked up on the next pass.
+                else -> withTimeoutOrNull(wait) { wakeups.receive() }
+            }
+        }
+    }
+
+    // Null when idle, 0 after granting one call, otherwise milliseconds until tokens are due.
+    private fun grantNext(): Long? = synchronized(lock) {
+        val now = clockMillis()
+        val next = queue.minWithOrNull(compareBy<Waiter>({ rank(it, now) }, { it.seq })) ?: return null
+        val wait = bucket.tryAcquire(next.cost)
+        if (wait > 0) return wait
+        queue.remove(next)
+        next.granted.complete(Unit)
+        0L
+    }
+
+    private fun rank(waiter: Waiter, now: Long): Long =
+        (waiter.priority.ordinal - (now - waiter.enqueuedAt) / agingMillis).coerceAtLeast(0)
+
+    companion object {
+        const val DEFAULT_RATE_PER_MINUTE = 1_800
+        const val DEFAULT_BURST = 16
+        const val DEFAULT_CAPACITY = 64
+        const val DEFAULT_AGING_MILLIS = 2_000L
+
+        /** Process-wide scheduler used by [CloudVisionClient]; unset means calls go out unthrottled. */
+        @Volatile
+        var shared: RequestScheduler? = null
+            private set
+
+        /** Sizes [shared] from the `vision_rate_per_minute`, `vision_burst` and `vision_queue_capacity` prefs. */
+        fun configure(context: Context) {
+            val prefs = context.getSharedPreferences("ocr_prefs", Context.MODE_PRIVATE)
+            val rate = prefs.getInt("vision_rate_per_minute", DEFAULT_RATE_PER_MINUTE).coerceAtLeast(1)
+            val burst = prefs.getInt("vision_burst", DEFAULT_BURST).coerceAtLeast(1)
+            val capacity = prefs.getInt("vision_queue_capacity", DEFAULT_CAPACITY).coerceAtLeast(1)
+            shared = RequestScheduler(TokenBucket(rate / 60.0, burst), capacity)
+        }
+    }
+}
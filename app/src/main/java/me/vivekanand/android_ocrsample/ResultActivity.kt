@@ -2,9 +2,10 @@ package me.vivekanand.android_ocrsample
 
 import android.os.Bundle
 import androidx.appcompat.app.AppCompatActivity
+import androidx.work.Data
 import androidx.work.OneTimeWorkRequestBuilder
+import androidx.work.OutOfQuotaPolicy
 import androidx.work.WorkManager
-import androidx.work.workDataOf
 
 class ResultActivity : AppCompatActivity() {
     override fun onCreate(savedInstanceState: Bundle?) {
@@ -12,12 +13,20 @@ class ResultActivity : AppCompatActivity() {
 
         //NotificationHelper.postErrorNotification(applicationContext, "Activity started")
 
+        val paths = OcrProcessor.pathsFrom(intent)
+        val regions = intent.getStringExtra(OcrProcessor.EXTRA_REGIONS)
+
+        val input = Data.Builder()
+        if (!paths.isNullOrEmpty()) input.putStringArray(OcrWorker.KEY_INPUT_PATHS, paths)
+        if (regions != null) input.putString(OcrWorker.KEY_REGIONS, regions)
+
         val workRequest = OneTimeWorkRequestBuilder<OcrWorker>()
-            .setInputData(workDataOf())
+            .setInputData(input.build())
+            .setExpedited(OutOfQuotaPolicy.RUN_AS_NON_EXPEDITED_WORK_REQUEST)
             .build()
 
         WorkManager.getInstance(this).enqueue(workRequest)
 
         finish()
     }
-}
\ No newline at end of file
+}
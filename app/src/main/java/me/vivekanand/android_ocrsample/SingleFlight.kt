@@ -0,0 +1,101 @@
+package me.vivekanand.android_ocrsample
+
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Deferred
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.async
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Runs at most one computation per key. Callers that arrive while it runs wait for the same
+ * result instead of starting their own. [identity] describes the input's version, e.g. size
+ * and mtime. When it changes mid-flight, [Policy] decides what the newcomer waits for.
+ * COALESCE lets the running computation finish for its own waiters and then runs one
+ * follow-up for the newer version. SUPERSEDE cancels the running one and restarts, and
+ * every waiter gets the new result.
+ *
+ * The work runs in [scope], not the caller's, so one waiter being cancelled doesn't cancel it
+ * for the others.
+ */
+class SingleFlight<K : Any, V>(private val scope: CoroutineScope) {
+
+    enum class Policy(val prefValue: String) {
+        COALESCE("coalesce"),
+        SUPERSEDE("supersede");
+
+        companion object {
+            fun from(value: String?): Policy = entries.firstOrNull { it.prefValue == value } ?: COALESCE
+        }
+    }
+
+    private inner class Flight(var identity: String) {
+        val result = CompletableDeferred<V>()
+        var job: Deferred<V>? = null
+
+        // COALESCE: the newest version that arrived mid-run, started once this run settles.
+        var next: Flight? = null
+        var nextBlock: (suspend () -> V)? = null
+    }
+
+    private val flights = HashMap<K, Flight>()
+    val joins = AtomicLong()
+    val supersedes = AtomicLong()
+
+    val inFlight: Int get() = synchronized(flights) { flights.size }
+
+    suspend fun run(key: K, identity: String, policy: Policy, block: suspend () -> V): V {
+        val flight = synchronized(flights) {
+            val running = flights[key]
+            when {
+                running == null -> Flight(identity).also {
+                    flights[key] = it
+                    start(key, it, block)
+                }
+                running.identity == identity -> running.also {
+                    joins.incrementAndGet()
+                }
+                policy == Policy.COALESCE -> {
+                    joins.incrementAndGet()
+                    // Later versions replace the queued one; its waiters get the newest result.
+                    running.nextBlock = block
+                    (running.next ?: Flight(identity).also { running.next = it }).also { it.identity = identity }
+                }
+                else -> running.also {
+                    supersedes.incrementAndGet()
+                    // Detach first: a cancelled job may complete synchronously, right here.
+                    val superseded = it.job
+                    it.job = null
+                    superseded?.cancel()
+                    it.identity = identity
+                    start(key, it, block)
+                }
+            }
+        }
+        return flight.result.await()
+    }
+
+    // Called with the lock held.
+    @OptIn(ExperimentalCoroutinesApi::class)
+    private fun start(key: K, flight: Flight, block: suspend () -> V) {
+        val job = scope.async(start = CoroutineStart.LAZY) { block() }
+        flight.job = job
+        job.invokeOnCompletion { cause ->
+            synchronized(flights) {
+                // A superseded run finishing (or being cancelled) must not settle the flight.
+                if (flight.job !== job) return@invokeOnCompletion
+                flights.remove(key)
+                val next = flight.next
+                val nextBlock = flight.nextBlock
+                if (next != null && nextBlock != null) {
+                    flights[key] = next
+                    start(key, next, nextBlock)
+                }
+            }
+            if (cause == null) flight.result.complete(job.getCompleted())
+            else flight.result.completeExceptionally(cause)
+        }
+        job.start()
+    }
+}
@@ -0,0 +1,68 @@
+package me.vivekanand.android_ocrsample
+
+import android.util.Log
+import okhttp3.Call
+import okhttp3.Callback
+import okhttp3.ConnectionPool
+import okhttp3.Dispatcher
+import okhttp3.HttpUrl.Companion.toHttpUrl
+import okhttp3.HttpUrl.Companion.toHttpUrlOrNull
+import okhttp3.OkHttpClient
+import okhttp3.Protocol
+import okhttp3.Request
+import okhttp3.Response
+import java.io.IOException
+import java.util.concurrent.TimeUnit
+
+/**
+ * App-wide HTTP transport for Cloud Vision. Every OCR path shares this client so
+ * the connection pool, dispatcher and negotiated HTTP/2 session survive between runs.
+ */
+object VisionHttp {
+    const val ENDPOINT = "https://vision.googleapis.com/v1/images:annotate"
+    private const val TAG = "VisionHttp"
+    private const val MAX_REQUESTS = 32
+
+    /**
+     * images:annotate URL used by clients created without an explicit one. Set from the
+     * `vision_endpoint` pref at startup, e.g. to point the app at a local stand-in server.
+     */
+    @Volatile
+    var endpoint: String = ENDPOINT
+        private set
+
+    fun configureEndpoint(url: String?) {
+        val parsed = url?.trim()?.toHttpUrlOrNull()
+        if (!url.isNullOrBlank() && parsed == null) Log.w(TAG, "Ignoring malformed vision_endpoint: $url")
+        endpoint = parsed?.toString() ?: ENDPOINT
+    }
+
+    val client: OkHttpClient by lazy { newClient() }
+
+    fun newClient(): OkHttpClient = OkHttpClient.Builder()
+        .connectionPool(ConnectionPool(4, 5, TimeUnit.MINUTES))
+        // Everything goes to one host, so OkHttp's default of 5 would queue bulk work and
+        // hedges behind each other; the RequestScheduler is what limits the rate.
+        .dispatcher(Dispatcher().apply {
+            maxRequests = MAX_REQUESTS
+            maxRequestsPerHost = MAX_REQUESTS
+        })
+        .protocols(listOf(Protocol.HTTP_2, Protocol.HTTP_1_1))
+        .retryOnConnectionFailure(true)
+        .eventListenerFactory(OcrMetrics.eventListenerFactory)
+        .build()
+
+    // Opens (DNS + TCP + TLS + ALPN) a pooled connection ahead of the first real request.
+    fun prewarm(url: String = endpoint.toHttpUrl().resolve("/").toString()) {
+        val request = Request.Builder().url(url).head().build()
+        client.newCall(request).enqueue(object : Callback {
+            override fun onFailure(call: Call, e: IOException) {
+                Log.w(TAG, "Prewarm failed: ${e.message}")
+            }
+
+            override fun onResponse(call: Call, response: Response) {
+                response.close()
+            }
+        })
+    }
+}
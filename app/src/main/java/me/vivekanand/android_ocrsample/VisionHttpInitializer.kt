@@ -0,0 +1,19 @@
+package me.vivekanand.android_ocrsample
+
+import android.content.Context
+import androidx.startup.Initializer
+
+class VisionHttpInitializer : Initializer<Unit> {
+    override fun create(context: Context) {
+        val prefs = context.getSharedPreferences("ocr_prefs", Context.MODE_PRIVATE)
+        VisionHttp.configureEndpoint(prefs.getString("vision_endpoint", null))
+        RequestScheduler.configure(context)
+        BudgetEncoder.targetBytes = prefs.getInt("upload_target_bytes", BudgetEncoder.DEFAULT_TARGET_BYTES)
+        // No key means no Cloud Vision calls, so don't pay for the handshake.
+        if (!prefs.getString("cloud_vision_api_key", null).isNullOrBlank()) {
+            VisionHttp.prewarm()
+        }
+    }
+
+    override fun dependencies(): List<Class<out Initializer<*>>> = emptyList()
+}
@@ -0,0 +1,110 @@
+package me.vivekanand.android_ocrsample
+
+import android.app.Service
+import android.content.Context
+import android.content.Intent
+import android.content.pm.ServiceInfo
+import android.os.Build
+import android.os.FileObserver
+import android.os.IBinder
+import android.util.Log
+import androidx.core.content.ContextCompat
+import java.io.File
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+
+/**
+ * Foreground service that OCRs images as soon as they finish writing into the watched folders
+ * (the `watch_folders` pref, `;`-separated). It listens for CLOSE_WRITE and MOVED_TO, so each
+ * capture goes straight to [OcrProcessor] without an activity launch or a WorkManager hop.
+ */
+class WatchFolderService : Service() {
+    private var observers: List<FileObserver> = emptyList()
+    private var watcher: FolderWatcher? = null
+
+    override fun onBind(intent: Intent?): IBinder? = null
+
+    override fun onStartCommand(intent: Intent?, flags: Int, startId: Int): Int {
+        val foreground = NotificationHelper.watchForegroundInfo(this)
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
+            startForeground(foreground.notificationId, foreground.notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_SPECIAL_USE)
+        } else {
+            startForeground(foreground.notificationId, foreground.notification)
+        }
+        if (watcher == null) startWatching()
+        return START_STICKY
+    }
+
+    private fun startWatching() {
+        val prefs = getSharedPreferences("ocr_prefs", Context.MODE_PRIVATE)
+        val processor = OcrProcessor(this)
+        val watcher = FolderWatcher(
+            CoroutineScope(SupervisorJob() + Dispatchers.IO),
+            debounceMillis = prefs.getLong("watch_debounce_ms", FolderWatcher.DEFAULT_DEBOUNCE_MILLIS),
+            maxBacklog = prefs.getInt("watch_backlog", FolderWatcher.DEFAULT_MAX_BACKLOG).coerceAtLeast(1),
+        ) { path -> processor.run(arrayOf(path)) }
+        this.watcher = watcher
+
+        observers = folders(this).filter { it.isDirectory }.map { dir ->
+            observer(dir) { name -> watcher.onFileWritten(File(dir, name).path) }.apply { startWatching() }
+        }
+        Log.i(TAG, "Watching ${observers.size} folder(s)")
+        isRunning = true
+    }
+
+    override fun onDestroy() {
+        observers.forEach { it.stopWatching() }
+        observers = emptyList()
+        watcher?.let {
+            Log.i(TAG, "Stopped: processed=${it.processedCount.get()} dropped=${it.droppedCount.get()}")
+            it.close()
+        }
+        watcher = null
+        isRunning = false
+        super.onDestroy()
+    }
+
+    companion object {
+        private const val TAG = "WatchFolderService"
+        private const val EVENTS = FileObserver.CLOSE_WRITE or FileObserver.MOVED_TO
+
+        @Volatile
+        @JvmStatic
+        var isRunning = false
+            private set
+
+        @JvmStatic
+        fun start(context: Context) {
+            ContextCompat.startForegroundService(context, Intent(context, WatchFolderService::class.java))
+        }
+
+        @JvmStatic
+        fun stop(context: Context) {
+            context.stopService(Intent(context, WatchFolderService::class.java))
+        }
+
+        fun folders(context: Context): List<File> {
+            val spec = context.getSharedPreferences("ocr_prefs", Context.MODE_PRIVATE)
+                .getString("watch_folders", null)
+            val paths = spec?.split(';')?.map { it.trim() }?.filter { it.isNotEmpty() }.orEmpty()
+            return paths.ifEmpty { listOf(File(OcrProcessor.DEFAULT_IMAGE_PATH).parent!!) }.map { File(it) }
+        }
+
+        private fun observer(dir: File, onWritten: (String) -> Unit): FileObserver {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                return object : FileObserver(dir, EVENTS) {
+                    override fun onEvent(event: Int, path: String?) {
+                        if (path != null) onWritten(path)
+                    }
+                }
+            }
+            @Suppress("DEPRECATION")
+            return object : FileObserver(dir.path, EVENTS) {
+                override fun onEvent(event: Int, path: String?) {
+                    if (path != null) onWritten(path)
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package me.vivekanand.android_ocrsample
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.runBlocking
+import me.vivekanand.ocrcore.AnnotateResult
+import me.vivekanand.ocrcore.ImagePayload
+import me.vivekanand.ocrcore.ImageProbe
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.IOException
+import java.util.Collections
+
+class AnnotateBatcherTest {
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+    private val batches = Collections.synchronizedList(ArrayList<List<String>>())
+
+    private class Named(val name: String, val size: Long = 1_000) : ImagePayload {
+        override fun writeTo(out: java.io.OutputStream) = Unit
+        override fun sizeHint() = size
+    }
+
+    private fun batcher(maxBatchSize: Int, lingerMillis: Long) =
+        AnnotateBatcher(maxBatchSize, lingerMillis, scope) { images ->
+            val names = images.map { (it as Named).name }
+            batches += names
+            names.map { AnnotateResult("text of $it") }
+        }
+
+    @After
+    fun tearDown() {
+        scope.cancel()
+    }
+
+    @Test
+    fun fullBatchIsSentWithoutWaitingForTheLinger() = runBlocking {
+        val batcher = batcher(maxBatchSize = 3, lingerMillis = 60_000)
+        val results = (1..3).map { async { batcher.submit(Named("img$it")).text } }.awaitAll()
+
+        assertEquals(listOf("text of img1", "text of img2", "text of img3"), results)
+        assertEquals(1, batches.size)
+        assertEquals(3, batches[0].size)
+    }
+
+    @Test
+    fun partialBatchIsFlushedAfterTheLinger() = runBlocking {
+        val batcher = batcher(maxBatchSize = 16, lingerMillis = 20)
+        val results = (1..5).map { async { batcher.submit(Named("img$it")).text } }.awaitAll()
+
+        assertEquals((1..5).map { "text of img$it" }, results)
+        assertEquals(1, batches.size)
+    }
+
+    @Test
+    fun overflowIsSplitAcrossBatches() = runBlocking {
+        val batcher = batcher(maxBatchSize = 2, lingerMillis = 20)
+        val results = (1..5).map { async { batcher.submit(Named("img$it")).text } }.awaitAll()
+
+        assertEquals((1..5).map { "text of img$it" }, results)
+        assertEquals(listOf(2, 2, 1), batches.map { it.size }.sortedDescending())
+    }
+
+    @Test
+    fun failureReachesEveryCallerInTheBatch() = runBlocking {
+        val batcher = AnnotateBatcher(2, 20, scope) { throw IOException("boom") }
+        val failures = (1..2).map {
+            async { runCatching { batcher.submit(Named("img$it")) }.exceptionOrNull() }
+        }.awaitAll()
+
+        assertTrue(failures.all { it is IOException && it.message == "boom" })
+    }
+
+    @Test
+    fun badImageFailsAloneAndTheRestAreRetriedIndividually() = runBlocking {
+        val batcher = AnnotateBatcher(3, 60_000, scope) { images ->
+            val names = images.map { (it as Named).name }
+            batches += names
+            if ("bad" in names) throw IOException("Unreadable image: bad")
+            names.map { AnnotateResult("text of $it") }
+        }
+        val results = listOf("img1", "bad", "img3").map { name ->
+            async { runCatching { batcher.submit(Named(name)).text } }
+        }.awaitAll()
+
+        assertEquals("text of img1", results[0].getOrNull())
+        assertTrue(results[1].exceptionOrNull() is IOException)
+        assertEquals("text of img3", results[2].getOrNull())
+        assertEquals(4, batches.size)
+    }
+
+    @Test
+    fun serverErrorIsNotSplit() = runBlocking {
+        val batcher = AnnotateBatcher(2, 60_000, scope) { images ->
+            batches += images.map { (it as Named).name }
+            throw VisionHttpException(503, "unavailable")
+        }
+        (1..2).map { async { runCatching { batcher.submit(Named("img$it")) } } }.awaitAll()
+
+        assertEquals(1, batches.size)
+    }
+
+    @Test
+    fun batchIsSplitBeforeItOutgrowsTheRequestLimit() = runBlocking {
+        val batcher = batcher(16, 200)
+        // Three 4 MB pass-through files: any two already exceed 10 MB once Base64-encoded.
+        val results = (1..3).map { n ->
+            async { batcher.submit(Named("img$n", ImageProbe.MAX_PASS_THROUGH_BYTES)).text }
+        }.awaitAll()
+
+        assertEquals(listOf("text of img1", "text of img2", "text of img3"), results)
+        assertEquals(3, batches.size)
+        assertTrue(batches.all { it.size == 1 })
+    }
+}
@@ -0,0 +1,33 @@
+package me.vivekanand.android_ocrsample
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class BitmapDecoderTest {
+    private val budget = BitmapDecoder.DEFAULT_PIXEL_BUDGET
+
+    @Test
+    fun smallImagesAreDecodedAtFullResolution() {
+        assertEquals(1, BitmapDecoder.calculateSampleSize(1080, 2400, budget))
+        assertEquals(1, BitmapDecoder.calculateSampleSize(2048, 1536, budget))
+    }
+
+    @Test
+    fun largePhotosAreSampledDownIntoTheBudget() {
+        // 12 MP and 50 MP camera frames.
+        assertEquals(2, BitmapDecoder.calculateSampleSize(4000, 3000, budget))
+        assertEquals(4, BitmapDecoder.calculateSampleSize(8160, 6120, budget))
+    }
+
+    @Test
+    fun budgetIsConfigurable() {
+        assertEquals(4, BitmapDecoder.calculateSampleSize(4000, 3000, 1_000_000))
+        assertEquals(1, BitmapDecoder.calculateSampleSize(4000, 3000, Int.MAX_VALUE))
+    }
+
+    @Test
+    fun nonPositiveBudgetStillTerminates() {
+        assertEquals(2048, BitmapDecoder.calculateSampleSize(4000, 3000, -1))
+        assertEquals(2048, BitmapDecoder.calculateSampleSize(4000, 3000, 0))
+    }
+}
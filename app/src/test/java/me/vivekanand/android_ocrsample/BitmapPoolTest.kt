@@ -0,0 +1,23 @@
+package me.vivekanand.android_ocrsample
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class BitmapPoolTest {
+
+    @Test
+    fun bucketsAreThePowerOfTwoAboveTheSize() {
+        assertEquals(0, BitmapPool.bucketOf(1))
+        assertEquals(10, BitmapPool.bucketOf(1024))
+        assertEquals(11, BitmapPool.bucketOf(1025))
+        // A 3 MP RGB_565 decode and a slightly smaller one share a bucket.
+        assertEquals(BitmapPool.bucketOf(2048L * 1536 * 2), BitmapPool.bucketOf(2000L * 1500 * 2))
+    }
+
+    @Test
+    fun sampledSizeRoundsUpSoTheReusedBitmapIsLargeEnough() {
+        assertEquals(2000, BitmapDecoder.sampled(4000, 2))
+        assertEquals(2001, BitmapDecoder.sampled(4001, 2))
+        assertEquals(1021, BitmapDecoder.sampled(8163, 8))
+    }
+}
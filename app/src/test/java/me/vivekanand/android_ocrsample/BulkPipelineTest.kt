@@ -0,0 +1,72 @@
+package me.vivekanand.android_ocrsample
+
+import kotlinx.coroutines.async
+import kotlinx.coroutines.cancelAndJoin
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.IOException
+import java.util.Collections
+import java.util.concurrent.atomic.AtomicInteger
+
+class BulkPipelineTest {
+    private val uploading = AtomicInteger()
+    private val peakUploads = AtomicInteger()
+    private val results = Collections.synchronizedList(ArrayList<BulkPipeline.ItemResult<Int>>())
+
+    private fun pipeline(uploadConcurrency: Int, uploadMillis: Long = 20) = BulkPipeline<Int, String>(
+        cpuWorkers = 4,
+        uploadConcurrency = uploadConcurrency,
+        decode = { n -> if (n == 13) throw IOException("unreadable $n") else "image $n" },
+        encode = { it.toByteArray() },
+        upload = { bytes ->
+            peakUploads.accumulateAndGet(uploading.incrementAndGet()) { a, b -> maxOf(a, b) }
+            delay(uploadMillis)
+            uploading.decrementAndGet()
+            "text of " + String(bytes)
+        },
+    )
+
+    @Test
+    fun everyItemIsReportedOnceAndFailuresDoNotStopTheRest() = runBlocking {
+        val report = pipeline(uploadConcurrency = 3).run((0 until 40).toList()) { results += it }
+
+        assertEquals(40, results.size)
+        assertEquals((0 until 40).toSet(), results.map { it.index }.toSet())
+        assertEquals("text of image 7", results.first { it.index == 7 }.text)
+        assertEquals("unreadable 13", results.first { it.index == 13 }.error?.message)
+        assertEquals(39, report.succeeded)
+        assertEquals(1, report.failed)
+        assertEquals(results.filter { it.text != null }.sumOf { "image ${it.index}".length }.toLong(), report.bytesUploaded)
+    }
+
+    @Test
+    fun uploadsStayWithinTheConfiguredConcurrency() = runBlocking {
+        pipeline(uploadConcurrency = 2).run((0 until 30).toList()) {}
+        assertEquals(2, peakUploads.get())
+    }
+
+    @Test
+    fun progressCountsUpToTheTotal() = runBlocking {
+        val updates = Collections.synchronizedList(ArrayList<BulkPipeline.Progress>())
+        pipeline(uploadConcurrency = 4).run((0 until 20).toList(), onProgress = { updates += it }) {}
+
+        assertTrue(updates.all { it.total == 20 })
+        assertEquals(19, updates.maxOf { it.completed })
+        assertEquals(1, updates.maxOf { it.failed })
+        assertEquals(19, updates.maxOf { it.encoded })
+    }
+
+    @Test
+    fun cancellingStopsEveryStage() = runBlocking {
+        val run = async { pipeline(uploadConcurrency = 1, uploadMillis = 1_000).run((0 until 100).toList()) { results += it } }
+        delay(100)
+        withTimeout(1_000) { run.cancelAndJoin() }
+
+        assertTrue(run.isCancelled)
+        assertTrue("finished ${results.size}", results.size < 5)
+    }
+}
@@ -0,0 +1,127 @@
+package me.vivekanand.android_ocrsample
+
+import me.vivekanand.ocrcore.HedgePolicy
+import me.vivekanand.ocrcore.ImagePayload
+import mockwebserver3.Dispatcher
+import mockwebserver3.MockResponse
+import mockwebserver3.MockWebServer
+import mockwebserver3.RecordedRequest
+import okhttp3.OkHttpClient
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Before
+import org.junit.Test
+import java.net.SocketTimeoutException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class CloudVisionHedgingTest {
+    private val server = MockWebServer()
+    private val requests = AtomicInteger()
+    private val release = CountDownLatch(1)
+    private val image = listOf(ImagePayload { it.write(byteArrayOf(1, 2, 3)) })
+    // Cold deadline well past the longest hold, so a timeout can only come from the histogram.
+    private val policy = HedgePolicy(
+        minSamples = 5,
+        defaultHedgeMillis = 100,
+        defaultDeadlineMillis = 10_000,
+        minDeadlineMillis = 300,
+    )
+
+    // Never hedges on its own before a held request gives up, and gives histogram-derived
+    // deadlines room for a second connection on a slow machine.
+    private val patient = policy.copy(defaultHedgeMillis = 10_000, minDeadlineMillis = 8_000)
+
+    /**
+     * Answers the n-th request (0-based) right away, or once [release] opens when [hold] is true
+     * for it. A held request gives up waiting after [HOLD_SECONDS] and answers anyway.
+     */
+    private fun serve(hold: (Int) -> Boolean) {
+        server.dispatcher = object : Dispatcher() {
+            override fun dispatch(request: RecordedRequest): MockResponse {
+                val n = requests.getAndIncrement()
+                if (hold(n)) release.await(HOLD_SECONDS, TimeUnit.SECONDS)
+                return MockResponse.Builder()
+                    .body("{\"responses\":[{\"fullTextAnnotation\":{\"text\":\"answer $n\"}}]}")
+                    .build()
+            }
+        }
+    }
+
+    private fun client(policy: HedgePolicy = this.policy) =
+        CloudVisionClient(OkHttpClient(), server.url("/v1/images:annotate").toString(), policy)
+
+    @Before
+    fun setUp() {
+        server.start()
+    }
+
+    @After
+    fun tearDown() {
+        release.countDown()
+        server.close()
+    }
+
+    @Test
+    fun fastCallIsNotHedged() {
+        serve { false }
+        val result = client(patient).annotateHedged("key", image)
+        assertEquals("answer 0", result.single().text)
+        assertEquals(1, requests.get())
+    }
+
+    @Test
+    fun latencySpikeIsAnsweredByTheHedge() {
+        serve { n -> n == 0 }
+        val result = client().annotateHedged("key", image)
+
+        assertEquals("answer 1", result.single().text)
+        assertEquals(2, requests.get())
+    }
+
+    @Test
+    fun hedgeThresholdFollowsRecentLatency() {
+        val client = client(patient)
+        repeat(10) { client.latency().record(20) }
+        // The cold default would wait 10 s, longer than the first request is held; only the
+        // observed p95 (20 ms) can get the hedge out in time to win.
+        serve { n -> n == 0 }
+
+        val result = client.annotateHedged("key", image)
+
+        assertEquals("answer 1", result.single().text)
+        assertEquals(2, requests.get())
+    }
+
+    @Test
+    fun deadlineComesFromTheHistogram() {
+        val client = client()
+        repeat(10) { client.latency().record(50) }
+        // p99 50 ms * 3 is clamped up to the 300 ms floor. Under the 10 s cold default both
+        // held requests would answer before the deadline instead.
+        serve { true }
+
+        try {
+            client.annotateHedged("key", image)
+            fail("expected a timeout")
+        } catch (expected: SocketTimeoutException) {
+        }
+    }
+
+    @Test
+    fun batchLatencyDoesNotMoveTheSingleImageWindow() {
+        serve { false }
+        val client = client(patient)
+        client.annotateHedged("key", image)
+        assertEquals(1, client.latency(1).count())
+        assertEquals(0, client.latency(16).count())
+        assertTrue(client.latency(9) === client.latency(8))
+    }
+
+    private companion object {
+        const val HOLD_SECONDS = 5L
+    }
+}
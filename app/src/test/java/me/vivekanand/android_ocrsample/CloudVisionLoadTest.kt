@@ -0,0 +1,80 @@
+package me.vivekanand.android_ocrsample
+
+import me.vivekanand.ocrcore.FakeVisionServer
+import me.vivekanand.ocrcore.ImagePayload
+import me.vivekanand.ocrcore.LatencyModel
+import me.vivekanand.ocrcore.LoadHarness
+import me.vivekanand.ocrcore.RecordedResponses
+import okhttp3.OkHttpClient
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+/**
+ * Drives [CloudVisionClient] against a local [FakeVisionServer] at fixed request rates.
+ * Runs on a plain JVM. Every assertion carries the full report, so a failure shows the
+ * latency distribution and allocation rate it was judged on.
+ */
+class CloudVisionLoadTest {
+    private val image = ImagePayload { it.write(ByteArray(64 * 1024) { i -> i.toByte() }) }
+    private var server: FakeVisionServer? = null
+
+    private fun start(server: FakeVisionServer): CloudVisionClient {
+        this.server = server.start()
+        return CloudVisionClient(OkHttpClient(), server.endpoint)
+    }
+
+    @After
+    fun tearDown() {
+        server?.close()
+    }
+
+    @Test
+    fun sustainsTheOfferedRate() {
+        val client = start(FakeVisionServer(latency = LatencyModel.fixed(20)))
+
+        val report = LoadHarness(ratePerSecond = 50.0, requests = 100, maxConcurrency = 8).run {
+            check(client.annotate("key", listOf(image)).single().text != null)
+        }
+
+        assertEquals("fixed 20 ms: $report", 100, report.succeeded)
+        assertTrue("fixed 20 ms: $report", report.throughputPerSecond > 40)
+        assertTrue("fixed 20 ms: $report", report.percentile(0.5) >= 20)
+        assertTrue("fixed 20 ms: $report", report.allocatedBytesPerRequest > 0)
+    }
+
+    @Test
+    fun longTailShowsUpInTheUpperPercentiles() {
+        val client = start(FakeVisionServer(latency = LatencyModel.logNormal(medianMillis = 20, sigma = 0.8)))
+
+        val report = LoadHarness(ratePerSecond = 100.0, requests = 200, maxConcurrency = 16).run {
+            client.annotate("key", listOf(image))
+        }
+
+        assertTrue("log-normal 20 ms: $report", report.percentile(0.99) > 2 * report.percentile(0.5))
+    }
+
+    @Test
+    fun serverErrorsAreReportedAsFailures() {
+        val fake = FakeVisionServer(errorRate = 0.2, seed = 7)
+        val client = start(fake)
+
+        val report = LoadHarness(ratePerSecond = 200.0, requests = 100).run {
+            client.annotate("key", listOf(image))
+        }
+
+        assertEquals(report.toString(), fake.errorCount, report.failed)
+        assertEquals(report.toString(), 100, report.succeeded + report.failed)
+        assertTrue(report.toString(), report.failed in 5..40)
+    }
+
+    @Test
+    fun batchedCallGetsOneResponsePerImage() {
+        val client = start(FakeVisionServer(responses = listOf(RecordedResponses.words(3), RecordedResponses.words(5))))
+
+        val results = client.annotate("key", listOf(image, image, image))
+
+        assertEquals(listOf("word0 word1 word2", "word0 word1 word2 word3 word4", "word0 word1 word2"), results.map { it.text })
+    }
+}
@@ -0,0 +1,77 @@
+package me.vivekanand.android_ocrsample
+
+import android.graphics.Bitmap
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.runBlocking
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.atomic.AtomicInteger
+
+class EnginePoolTest {
+    private val inits = AtomicInteger()
+    private val closes = AtomicInteger()
+    private val running = AtomicInteger()
+    private val maxRunning = AtomicInteger()
+
+    private inner class FakeEngine : OcrEngine {
+        init {
+            inits.incrementAndGet()
+        }
+
+        override val name = "fake"
+
+        override fun recognize(bitmap: Bitmap): String? = null
+
+        fun work(): String {
+            val now = running.incrementAndGet()
+            maxRunning.accumulateAndGet(now) { a, b -> maxOf(a, b) }
+            Thread.sleep(20)
+            running.decrementAndGet()
+            return name
+        }
+
+        override fun close() {
+            closes.incrementAndGet()
+        }
+    }
+
+    @Test
+    fun engineIsInitialisedOnceAndReused() = runBlocking {
+        val pool = EnginePool(maxInstances = 2) { FakeEngine() }
+        repeat(10) { assertEquals("fake", pool.use { it.work() }) }
+        assertEquals(1, inits.get())
+    }
+
+    @Test
+    fun concurrencyIsCappedAtMaxInstances() = runBlocking(Dispatchers.Default) {
+        val pool = EnginePool(maxInstances = 3) { FakeEngine() }
+        (1..20).map { async { pool.use { it.work() } } }.awaitAll()
+
+        assertTrue("ran ${maxRunning.get()} at once", maxRunning.get() <= 3)
+        assertTrue(inits.get() <= 3)
+    }
+
+    @Test
+    fun warmUpInitialisesAheadOfTheFirstRequest() = runBlocking {
+        val pool = EnginePool(maxInstances = 2) { FakeEngine() }
+        pool.warmUp()
+        assertEquals(1, inits.get())
+        pool.use { it.work() }
+        assertEquals(1, inits.get())
+    }
+
+    @Test
+    fun trimReleasesIdleEnginesAndTheyAreRecreatedLazily() = runBlocking {
+        val pool = EnginePool(maxInstances = 2) { FakeEngine() }
+        pool.use { it.work() }
+        pool.trim()
+        assertEquals(1, closes.get())
+        assertEquals(0, pool.idleCount)
+
+        pool.use { it.work() }
+        assertEquals(2, inits.get())
+    }
+}
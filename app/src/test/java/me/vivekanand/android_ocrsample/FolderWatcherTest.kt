@@ -0,0 +1,132 @@
+package me.vivekanand.android_ocrsample
+
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Collections
+import java.util.concurrent.atomic.AtomicInteger
+
+class FolderWatcherTest {
+    private val processed = Collections.synchronizedList(ArrayList<String>())
+    private var watcher: FolderWatcher? = null
+
+    private fun watcher(
+        debounceMillis: Long = 50,
+        maxBacklog: Int = 32,
+        maxInFlight: Int = 4,
+        process: suspend (String) -> Unit = { processed += it },
+    ) = FolderWatcher(CoroutineScope(SupervisorJob() + Dispatchers.Default), debounceMillis, maxBacklog, maxInFlight, process)
+        .also { watcher = it }
+
+    @After
+    fun tearDown() {
+        watcher?.close()
+    }
+
+    private suspend fun awaitProcessed(count: Long) = withTimeout(2_000) {
+        while (watcher!!.processedCount.get() < count) delay(5)
+    }
+
+    @Test
+    fun repeatedWritesOfOneFileAreReadOnce() = runBlocking {
+        val watcher = watcher()
+        repeat(5) {
+            watcher.onFileWritten("/shots/g.jpg")
+            delay(10)
+        }
+        awaitProcessed(1)
+        delay(100)
+
+        assertEquals(listOf("/shots/g.jpg"), processed)
+    }
+
+    @Test
+    fun distinctFilesAreAllProcessed() = runBlocking {
+        val watcher = watcher()
+        (1..10).forEach { watcher.onFileWritten("/shots/s$it.png") }
+        awaitProcessed(10)
+
+        assertEquals((1..10).map { "/shots/s$it.png" }.toSet(), processed.toSet())
+        assertEquals(0, watcher.pendingCount())
+    }
+
+    @Test
+    fun burstBeyondTheBacklogDropsTheOldest() = runBlocking {
+        val gate = CompletableDeferred<Unit>()
+        val watcher = watcher(debounceMillis = 0, maxBacklog = 3, maxInFlight = 1) {
+            gate.await()
+            processed += it
+        }
+        watcher.onFileWritten("/shots/busy.jpg")
+        delay(50) // the single worker is now blocked on busy.jpg
+        (1..6).forEach {
+            watcher.onFileWritten("/shots/s$it.jpg")
+            delay(10)
+        }
+        gate.complete(Unit)
+        awaitProcessed(4)
+
+        assertEquals(3L, watcher.droppedCount.get())
+        assertEquals(listOf("/shots/busy.jpg", "/shots/s4.jpg", "/shots/s5.jpg", "/shots/s6.jpg"), processed)
+    }
+
+    @Test
+    fun failingRunDoesNotStopTheWatcher() = runBlocking {
+        val watcher = watcher(maxInFlight = 1) {
+            if (it.endsWith("bad.jpg")) throw java.io.IOException("unreadable")
+            processed += it
+        }
+        watcher.onFileWritten("/shots/bad.jpg")
+        awaitProcessed(1)
+        watcher.onFileWritten("/shots/good.jpg")
+        awaitProcessed(2)
+
+        assertEquals(listOf("/shots/good.jpg"), processed)
+    }
+
+    @Test
+    fun rewriteDuringARunIsProcessedAfterIt() = runBlocking {
+        val gate = CompletableDeferred<Unit>()
+        val active = AtomicInteger()
+        val maxActive = AtomicInteger()
+        val watcher = watcher(debounceMillis = 0, maxInFlight = 4) {
+            maxActive.accumulateAndGet(active.incrementAndGet(), ::maxOf)
+            try {
+                gate.await()
+                processed += it
+            } finally {
+                active.decrementAndGet()
+            }
+        }
+        watcher.onFileWritten("/shots/g.jpg")
+        withTimeout(2_000) { while (active.get() == 0) delay(5) }
+        watcher.onFileWritten("/shots/g.jpg")
+        watcher.onFileWritten("/shots/g.jpg")
+        delay(100) // three idle workers could have picked it up by now
+        assertEquals(1, maxActive.get())
+        assertEquals(1, watcher.pendingCount())
+
+        gate.complete(Unit)
+        awaitProcessed(2)
+        delay(50)
+
+        assertEquals(listOf("/shots/g.jpg", "/shots/g.jpg"), processed)
+        assertEquals(1, maxActive.get())
+    }
+
+    @Test
+    fun onlyFinishedImagesCount() {
+        assertTrue(FolderWatcher.isImage("/shots/Screenshot_2024.PNG"))
+        assertFalse(FolderWatcher.isImage("/shots/.pending-1700000000-Screenshot.png"))
+        assertFalse(FolderWatcher.isImage("/shots/notes.txt"))
+    }
+}
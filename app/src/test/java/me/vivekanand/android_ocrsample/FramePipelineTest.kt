@@ -0,0 +1,117 @@
+package me.vivekanand.android_ocrsample
+
+import kotlinx.coroutines.CompletableDeferred
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Collections
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class FramePipelineTest {
+    private val width = 64
+    private val height = 48
+
+    private fun frame(luma: Int) = Frame(
+        ByteArray(width * height * 3 / 2) { if (it < width * height) luma.toByte() else 128.toByte() },
+        width, height,
+    )
+
+    /** Pushes [frames] from a source thread and returns once the last one was offered. */
+    private fun replay(pipeline: FramePipeline, frames: List<Frame>) {
+        SyntheticFrameSource(frames, intervalMillis = 0).run {
+            start(pipeline)
+            join()
+        }
+    }
+
+    /** The pipeline settles on its own threads; waits up to five seconds for [condition]. */
+    private fun awaitTrue(condition: () -> Boolean) {
+        val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5)
+        while (!condition()) {
+            check(System.nanoTime() < deadline) { "pipeline did not settle" }
+            Thread.sleep(1)
+        }
+    }
+
+    @Test
+    fun identicalFramesAreRecognisedOnce() {
+        val calls = AtomicInteger()
+        val gate = CompletableDeferred<Unit>()
+        val pipeline = FramePipeline({}, maxInFlight = 1) { calls.incrementAndGet(); gate.await(); "text" }
+        pipeline.onFrame(frame(90))
+        awaitTrue { calls.get() == 1 }
+        // The only slot is busy: all but the newest of these are replaced in the channel.
+        replay(pipeline, List(19) { frame(90) })
+        gate.complete(Unit)
+        awaitTrue { pipeline.skippedCount == 1L }
+        pipeline.close()
+
+        assertEquals(1, calls.get())
+        assertEquals(18, pipeline.droppedCount)
+    }
+
+    @Test
+    fun slowRecognitionConflatesToTheNewestFrame() {
+        val seen = Collections.synchronizedList(ArrayList<Int>())
+        val results = Collections.synchronizedList(ArrayList<String>())
+        val gate = CompletableDeferred<Unit>()
+        val pipeline = FramePipeline({ results += it }, maxInFlight = 1) { frame ->
+            val luma = frame.nv21[0].toInt() and 0xFF
+            seen += luma
+            gate.await()
+            "frame $luma"
+        }
+        pipeline.onFrame(frame(0))
+        awaitTrue { seen.size == 1 }
+        // 39 distinct frames arrive while the first recognition is still running.
+        replay(pipeline, List(39) { frame((it + 1) * 6) })
+        gate.complete(Unit)
+        awaitTrue { results.size == 2 }
+        pipeline.close()
+
+        assertEquals(listOf(0, 234), seen)
+        assertEquals(listOf("frame 0", "frame 234"), results)
+        assertEquals(38, pipeline.droppedCount)
+    }
+
+    @Test
+    fun inFlightRecognitionsAreBounded() {
+        val running = AtomicInteger()
+        val peak = AtomicInteger()
+        val started = AtomicInteger()
+        val gate = CompletableDeferred<Unit>()
+        val pipeline = FramePipeline({}, maxInFlight = 2) {
+            peak.accumulateAndGet(running.incrementAndGet()) { a, b -> maxOf(a, b) }
+            started.incrementAndGet()
+            gate.await()
+            running.decrementAndGet()
+            null
+        }
+        pipeline.onFrame(frame(20))
+        awaitTrue { started.get() == 1 }
+        pipeline.onFrame(frame(220))
+        awaitTrue { started.get() == 2 }
+        // Both slots are held; none of these may start a third recognition.
+        replay(pipeline, List(58) { frame(if (it % 2 == 0) 20 else 220) })
+        assertEquals(2, started.get())
+        gate.complete(Unit)
+        awaitTrue { pipeline.recognizedCount == 2L }
+        pipeline.close()
+
+        assertEquals(2, peak.get())
+    }
+
+    @Test
+    fun signatureIgnoresNoiseButSeesLocalChange() {
+        val base = ByteArray(width * height) { 100 }
+        val noisy = ByteArray(width * height) { (100 + it % 3).toByte() }
+        val word = base.copyOf().also { luma ->
+            for (y in 0 until 8) for (x in 0 until 8) luma[y * width + x] = 0
+        }
+        val reference = LumaSignature.of(base, width, height)
+
+        assertEquals(0, LumaSignature.of(noisy, width, height).changedCells(reference))
+        assertTrue(LumaSignature.of(word, width, height).changedCells(reference) > 0)
+    }
+}
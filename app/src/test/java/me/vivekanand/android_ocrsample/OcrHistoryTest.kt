@@ -0,0 +1,26 @@
+package me.vivekanand.android_ocrsample
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+
+class OcrHistoryTest {
+
+    @Test
+    fun everyWordIsRequiredAndTheLastIsAPrefix() {
+        assertEquals("wi fi settin*", OcrHistory.ftsQuery("Wi-Fi Settin"))
+        assertEquals("battery*", OcrHistory.ftsQuery("  battery "))
+    }
+
+    @Test
+    fun operatorsAndQuotesAreSearchedAsPlainWords() {
+        assertEquals("cats or dogs*", OcrHistory.ftsQuery("cats OR \"dogs\""))
+        assertEquals("a near 3 b*", OcrHistory.ftsQuery("a NEAR/3 b"))
+    }
+
+    @Test
+    fun punctuationOnlyHasNothingToSearch() {
+        assertNull(OcrHistory.ftsQuery(""))
+        assertNull(OcrHistory.ftsQuery("*\"-()"))
+    }
+}
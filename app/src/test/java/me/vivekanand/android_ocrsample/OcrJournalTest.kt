@@ -0,0 +1,108 @@
+package me.vivekanand.android_ocrsample
+
+import okhttp3.RequestBody.Companion.toRequestBody
+import okio.Buffer
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.IOException
+import java.net.SocketTimeoutException
+import kotlin.random.Random
+
+class OcrJournalTest {
+    @get:Rule
+    val tmp = TemporaryFolder()
+
+    private var now = 1_000_000L
+
+    private fun journal() = OcrJournal(tmp.root, Random(42)) { now }
+
+    @Test
+    fun persistedBodyIsReplayedByteForByte() {
+        val journal = journal()
+        val payload = "{\"requests\":[{\"image\":{\"content\":\"AAEC\"}}]}"
+        assertTrue(journal.persist("abc", "/sdcard/g.jpg", payload.toRequestBody()))
+
+        val job = journal.pending().single()
+        assertEquals("/sdcard/g.jpg", job.imagePath)
+        assertEquals(0, job.attempts)
+        val replayed = Buffer().also { journal.body(job).writeTo(it) }.readUtf8()
+        assertEquals(payload, replayed)
+    }
+
+    @Test
+    fun duplicateJobsForTheSameImageAreDropped() {
+        val journal = journal()
+        assertTrue(journal.persist("abc", "/sdcard/g.jpg", "first".toRequestBody()))
+        assertFalse(journal.persist("abc", "/sdcard/g.jpg", "second".toRequestBody()))
+        assertEquals(1, journal.pending().size)
+    }
+
+    @Test
+    fun attemptsSurviveReopeningAndCompleteRemovesTheJob() {
+        val journal = journal()
+        journal.persist("abc", "/sdcard/g.jpg", "body".toRequestBody())
+        assertEquals(1, journal.recordFailure(journal.pending().single()))
+
+        val reopened = journal()
+        val job = reopened.pending().single()
+        assertEquals(1, job.attempts)
+        reopened.complete(job)
+        assertTrue(reopened.pending().isEmpty())
+        assertTrue(tmp.root.listFiles().orEmpty().isEmpty())
+    }
+
+    @Test
+    fun backoffIsJitteredUnderAnExponentialCeiling() {
+        val journal = journal()
+        for (attempt in 0..12) {
+            val ceiling = minOf(OcrJournal.BASE_BACKOFF_MILLIS shl attempt, OcrJournal.MAX_BACKOFF_MILLIS)
+            val samples = List(200) { journal.backoffMillis(attempt) }
+            assertTrue(samples.all { it in 0..ceiling })
+            assertTrue("no jitter at attempt $attempt", samples.toSet().size > 1)
+        }
+    }
+
+    @Test
+    fun onlyTransientFailuresAreRetried() {
+        assertTrue(OcrJournal.isRetryable(SocketTimeoutException()))
+        assertTrue(OcrJournal.isRetryable(IOException("unreachable")))
+        assertTrue(OcrJournal.isRetryable(VisionHttpException(503, null)))
+        assertTrue(OcrJournal.isRetryable(VisionHttpException(429, null)))
+        assertFalse(OcrJournal.isRetryable(VisionHttpException(400, "bad key")))
+        assertFalse(OcrJournal.isRetryable(IllegalStateException()))
+    }
+
+    @Test
+    fun onlyJobsWhoseBackoffElapsedAreDue() {
+        val journal = journal()
+        journal.persist("a", "/sdcard/a.jpg", "a".toRequestBody())
+        journal.persist("b", "/sdcard/b.jpg", "b".toRequestBody())
+        now += OcrJournal.BASE_BACKOFF_MILLIS
+        assertEquals(2, journal.due().size)
+
+        val failed = journal.due().first { it.id == "a" }
+        journal.recordFailure(failed)
+        val retried = journal.pending().first { it.id == "a" }
+        assertTrue(retried.nextAttemptAt in now..now + OcrJournal.BASE_BACKOFF_MILLIS * 2)
+
+        now = retried.nextAttemptAt - 1
+        assertEquals(listOf("b"), journal.due().map { it.id })
+        assertEquals(0L, journal.nextDueInMillis())
+        journal.complete(journal.due().single())
+        assertEquals(1L, journal.nextDueInMillis())
+        now += 1
+        assertEquals(listOf("a"), journal.due().map { it.id })
+    }
+
+    @Test
+    fun quietJobsKeepTheirFlagAcrossFailures() {
+        val journal = journal()
+        journal.persist("abc_0", "/sdcard/g.jpg", "region".toRequestBody(), broadcast = false)
+        journal.recordFailure(journal.pending().single())
+        assertFalse(journal().pending().single().broadcast)
+    }
+}
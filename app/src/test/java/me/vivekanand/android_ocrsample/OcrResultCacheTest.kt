@@ -0,0 +1,125 @@
+package me.vivekanand.android_ocrsample
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotEquals
+import org.junit.Assert.assertNull
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+class OcrResultCacheTest {
+    @get:Rule
+    val tmp = TemporaryFolder()
+
+    private var now = 1_000_000_000L
+    private val params = "TEXT_DETECTION"
+
+    private fun cache(maxBytes: Long = OcrResultCache.DEFAULT_MAX_BYTES, maxFastPathEntries: Int = 256) =
+        OcrResultCache(File(tmp.root, "cache"), maxBytes, maxAgeMillis = 60_000, clock = { now }, maxFastPathEntries = maxFastPathEntries)
+
+    private fun image(name: String, content: String) = tmp.newFile(name).apply { writeText(content) }
+
+    @Test
+    fun hitAfterPut() {
+        val cache = cache()
+        val key = cache.keyFor(image("g.jpg", "pixels"), params)
+        assertNull(cache.get(key))
+        cache.put(key, "hello")
+        assertEquals("hello", cache.get(key))
+        assertEquals(1, cache.hits.get())
+        assertEquals(1, cache.misses.get())
+    }
+
+    @Test
+    fun unchangedFileSkipsHashing() {
+        val cache = cache()
+        val file = image("g.jpg", "pixels")
+        val first = cache.keyFor(file, params)
+        val second = cache.keyFor(file, params)
+        assertEquals(first, second)
+        assertEquals(1, cache.hashes.get())
+    }
+
+    @Test
+    fun fastPathSurvivesRestart() {
+        val file = image("g.jpg", "pixels")
+        val key = cache().keyFor(file, params)
+        val restarted = cache()
+        assertEquals(key, restarted.keyFor(file, params))
+        assertEquals(0, restarted.hashes.get())
+    }
+
+    @Test
+    fun changedContentOrParamsIsAMiss() {
+        val cache = cache()
+        val file = image("g.jpg", "pixels")
+        val key = cache.keyFor(file, params)
+        cache.put(key, "old")
+
+        file.writeText("other pixels")
+        file.setLastModified(file.lastModified() + 2_000)
+        assertNotEquals(key, cache.keyFor(file, params))
+        assertNotEquals(key, cache.keyFor(file, "DOCUMENT_TEXT_DETECTION"))
+    }
+
+    @Test
+    fun identicalBytesShareAnEntry() {
+        val cache = cache()
+        val key = cache.keyFor(image("a.jpg", "same"), params)
+        cache.put(key, "text")
+        assertEquals("text", cache.get(cache.keyFor(image("b.jpg", "same"), params)))
+    }
+
+    @Test
+    fun leastRecentlyUsedEntriesAreEvictedOverTheSizeLimit() {
+        val cache = cache(maxBytes = 10)
+        cache.put("a", "12345")
+        now += 1_000
+        cache.put("b", "12345")
+        now += 1_000
+        cache.get("a")
+        now += 1_000
+        cache.put("c", "12345")
+
+        assertEquals("12345", cache.get("a"))
+        assertNull(cache.get("b"))
+        assertEquals("12345", cache.get("c"))
+    }
+
+    @Test
+    fun entriesExpire() {
+        val cache = cache()
+        cache.put("a", "text")
+        now += 61_000
+        assertNull(cache.get("a"))
+    }
+
+    @Test
+    fun fastPathKeepsOnlyRecentFiles() {
+        val cache = cache(maxFastPathEntries = 2)
+        val files = (1..3).map { image("s$it.jpg", "pixels $it") }
+        files.forEach { cache.keyFor(it, params) }
+
+        cache.keyFor(files[2], params)
+        cache.keyFor(files[0], params)
+
+        // s1 fell out of the fast path and is hashed again; s3 is still remembered.
+        assertEquals(4, cache.hashes.get())
+        assertEquals(2, File(tmp.root, "cache/fastpath.properties").readLines().count { '=' in it })
+    }
+
+    @Test
+    fun evictedResultsLeaveTheFastPath() {
+        val cache = cache(maxBytes = 10)
+        val first = image("a.jpg", "a")
+        val key = cache.keyFor(first, params)
+        cache.put(key, "0123456789")
+        now += 1
+        cache.put(cache.keyFor(image("b.jpg", "b"), params), "0123456789")
+
+        assertEquals(1, File(tmp.root, "cache/fastpath.properties").readLines().count { '=' in it })
+        cache.keyFor(first, params)
+        assertEquals(3, cache.hashes.get())
+    }
+}
@@ -0,0 +1,132 @@
+package me.vivekanand.android_ocrsample
+
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.async
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.isActive
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import me.vivekanand.ocrcore.TokenBucket
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Assert.fail
+import org.junit.Test
+import java.net.SocketTimeoutException
+import java.util.Collections
+
+class RequestSchedulerTest {
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+
+    @After
+    fun tearDown() {
+        scope.cancel()
+    }
+
+    private fun scheduler(ratePerSecond: Double, capacity: Int = 64, agingMillis: Long = 60_000) =
+        RequestScheduler(TokenBucket(ratePerSecond, burst = 1), capacity, agingMillis, scope)
+
+    @Test
+    fun higherPriorityIsGrantedFirst() = runBlocking {
+        val scheduler = scheduler(ratePerSecond = 20.0)
+        scheduler.acquire(RequestScheduler.Priority.INTERACTIVE) // drains the burst
+        val order = Collections.synchronizedList(ArrayList<RequestScheduler.Priority>())
+
+        val calls = listOf(
+            RequestScheduler.Priority.BULK,
+            RequestScheduler.Priority.AUTOMATION,
+            RequestScheduler.Priority.INTERACTIVE,
+        ).map { priority ->
+            scope.async {
+                scheduler.acquire(priority)
+                order += priority
+            }
+        }
+        withTimeout(2_000) { calls.forEach { it.await() } }
+
+        assertEquals(
+            listOf(RequestScheduler.Priority.INTERACTIVE, RequestScheduler.Priority.AUTOMATION, RequestScheduler.Priority.BULK),
+            order,
+        )
+    }
+
+    @Test
+    fun waitingBulkWorkIsNotStarved() = runBlocking {
+        val scheduler = scheduler(ratePerSecond = 20.0, agingMillis = 100)
+        scheduler.acquire(RequestScheduler.Priority.INTERACTIVE)
+        // Keep interactive calls queued for two seconds.
+        val interactive = scope.launch {
+            while (isActive) {
+                if (scheduler.queueDepth(RequestScheduler.Priority.INTERACTIVE) < 2) {
+                    launch { scheduler.acquire(RequestScheduler.Priority.INTERACTIVE) }
+                }
+                delay(5)
+            }
+        }
+
+        val started = System.nanoTime()
+        withTimeout(2_000) { scheduler.acquire(RequestScheduler.Priority.BULK) }
+        val waitedMillis = (System.nanoTime() - started) / 1_000_000
+        interactive.cancel()
+
+        assertTrue("bulk waited $waitedMillis ms", waitedMillis < 800)
+    }
+
+    @Test
+    fun oldestBackgroundCallIsShedOverCapacity() = runBlocking {
+        val scheduler = scheduler(ratePerSecond = 0.001, capacity = 2)
+        scheduler.acquire(RequestScheduler.Priority.INTERACTIVE)
+
+        val oldest = scope.async { scheduler.acquire(RequestScheduler.Priority.BULK) }
+        delay(20)
+        scope.launch { scheduler.acquire(RequestScheduler.Priority.AUTOMATION) }
+        scope.launch { scheduler.acquire(RequestScheduler.Priority.INTERACTIVE) }
+        delay(20)
+        assertEquals(3, scheduler.queueDepth())
+        scope.launch { scheduler.acquire(RequestScheduler.Priority.BULK) }
+
+        try {
+            withTimeout(1_000) { oldest.await() }
+            fail("expected the oldest bulk call to be shed")
+        } catch (expected: LoadShedException) {
+        }
+        assertEquals(3, scheduler.queueDepth())
+        assertEquals(1, scheduler.queueDepth(RequestScheduler.Priority.INTERACTIVE))
+        assertEquals(1L, scheduler.shedCount.get())
+    }
+
+    @Test
+    fun cancelledCallLeavesTheQueue() = runBlocking {
+        val scheduler = scheduler(ratePerSecond = 0.001)
+        scheduler.acquire(RequestScheduler.Priority.INTERACTIVE)
+
+        val waiting = scope.launch { scheduler.acquire(RequestScheduler.Priority.AUTOMATION) }
+        delay(20)
+        assertEquals(1, scheduler.queueDepth())
+        waiting.cancel()
+        waiting.join()
+
+        assertEquals(0, scheduler.queueDepth())
+    }
+
+    @Test
+    fun admissionWaitIsBoundedByTheCallersTimeout() = runBlocking {
+        val scheduler = scheduler(ratePerSecond = 0.001)
+        scheduler.acquire(RequestScheduler.Priority.INTERACTIVE)
+
+        val started = System.nanoTime()
+        try {
+            scheduler.acquire(RequestScheduler.Priority.INTERACTIVE, timeoutMillis = 100)
+            fail("expected the wait to time out")
+        } catch (expected: SocketTimeoutException) {
+        }
+        val waitedMillis = (System.nanoTime() - started) / 1_000_000
+
+        assertTrue("waited $waitedMillis ms", waitedMillis in 80..1_000)
+        assertEquals(0, scheduler.queueDepth())
+    }
+}
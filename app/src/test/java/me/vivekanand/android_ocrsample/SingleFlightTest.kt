@@ -0,0 +1,122 @@
+package me.vivekanand.android_ocrsample
+
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeout
+import kotlinx.coroutines.yield
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.io.IOException
+import java.util.concurrent.atomic.AtomicInteger
+
+class SingleFlightTest {
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+    private val flights = SingleFlight<String, String>(scope)
+    private val runs = AtomicInteger()
+
+    @After
+    fun tearDown() {
+        scope.cancel()
+    }
+
+    @Test
+    fun concurrentCallersShareOneRun() = runBlocking {
+        val gate = CompletableDeferred<Unit>()
+        val results = (1..5).map {
+            async(Dispatchers.Default) {
+                flights.run("g.jpg", "100:1", SingleFlight.Policy.COALESCE) {
+                    runs.incrementAndGet()
+                    gate.await()
+                    "text"
+                }
+            }
+        }
+        while (flights.joins.get() < 4) yield()
+        gate.complete(Unit)
+
+        assertEquals(List(5) { "text" }, results.awaitAll())
+        assertEquals(1, runs.get())
+        assertEquals(0, flights.inFlight)
+    }
+
+    @Test
+    fun finishedFlightsAreNotReused() = runBlocking {
+        repeat(2) {
+            flights.run("g.jpg", "100:1", SingleFlight.Policy.COALESCE) { "run ${runs.incrementAndGet()}" }
+        }
+        assertEquals(2, runs.get())
+    }
+
+    @Test
+    fun coalesceRunsOneFollowUpWhenTheFileChanges() = runBlocking {
+        val first = async(Dispatchers.Default) {
+            flights.run("g.jpg", "100:1", SingleFlight.Policy.COALESCE) { delay(200); "old" }
+        }
+        while (flights.inFlight == 0) yield()
+        val followUps = (2..3).map { version ->
+            async(Dispatchers.Default) {
+                flights.run("g.jpg", "120:$version", SingleFlight.Policy.COALESCE) {
+                    runs.incrementAndGet()
+                    "new $version"
+                }
+            }.also { while (flights.joins.get() < version - 1) yield() }
+        }
+
+        assertEquals("old", first.await())
+        // Both newcomers share the single follow-up, built from the newest version.
+        assertEquals(listOf("new 3", "new 3"), followUps.awaitAll())
+        assertEquals(1, runs.get())
+        assertEquals(0, flights.inFlight)
+    }
+
+    @Test
+    fun supersedeRestartsAndEveryWaiterGetsTheNewResult() = runBlocking {
+        val oldCancelled = CompletableDeferred<Unit>()
+        val first = async(Dispatchers.Default) {
+            flights.run("g.jpg", "100:1", SingleFlight.Policy.SUPERSEDE) {
+                try {
+                    delay(10_000)
+                    "old"
+                } finally {
+                    oldCancelled.complete(Unit)
+                }
+            }
+        }
+        while (flights.inFlight == 0) yield()
+        val second = flights.run("g.jpg", "120:2", SingleFlight.Policy.SUPERSEDE) { delay(50); "new" }
+
+        assertEquals("new", second)
+        assertEquals("new", withTimeout(1_000) { first.await() })
+        withTimeout(1_000) { oldCancelled.await() }
+        assertEquals(1, flights.supersedes.get())
+    }
+
+    @Test
+    fun failureReachesEveryWaiter() = runBlocking {
+        val gate = CompletableDeferred<Unit>()
+        val waiters = (1..3).map {
+            async(Dispatchers.Default) {
+                runCatching {
+                    flights.run("g.jpg", "100:1", SingleFlight.Policy.COALESCE) {
+                        gate.await()
+                        throw IOException("boom")
+                    }
+                }
+            }
+        }
+        while (flights.joins.get() < 2) yield()
+        gate.complete(Unit)
+
+        waiters.awaitAll().forEach { result ->
+            assertEquals("boom", result.exceptionOrNull()?.message)
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package me.vivekanand.android_ocrsample
+
+/**
+ * Replays a fixed frame sequence at [intervalMillis] per frame, [loops] times over, on its own
+ * thread. Used to drive [FramePipeline] without a camera.
+ */
+class SyntheticFrameSource(
+    private val frames: List<Frame>,
+    private val intervalMillis: Long = 33,
+    private val loops: Int = 1,
+) : FrameSource {
+    @Volatile
+    private var thread: Thread? = null
+
+    override fun start(sink: FrameSink) {
+        val worker = Thread({
+            try {
+                repeat(loops) {
+                    for (frame in frames) {
+                        // Fresh timestamp so the pipeline sees a live-looking stream.
+                        sink.onFrame(Frame(frame.nv21, frame.width, frame.height))
+                        Thread.sleep(intervalMillis)
+                    }
+                }
+            } catch (_: InterruptedException) {
+            }
+        }, "synthetic-frames")
+        thread = worker
+        worker.start()
+    }
+
+    override fun stop() {
+        thread?.interrupt()
+        thread = null
+    }
+
+    /** Blocks until every frame has been emitted. */
+    fun join() {
+        thread?.join()
+    }
+}
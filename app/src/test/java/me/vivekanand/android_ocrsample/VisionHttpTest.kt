@@ -0,0 +1,85 @@
+package me.vivekanand.android_ocrsample
+
+import mockwebserver3.MockResponse
+import mockwebserver3.MockWebServer
+import okhttp3.Call
+import okhttp3.EventListener
+import okhttp3.Request
+import okhttp3.RequestBody.Companion.toRequestBody
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotNull
+import org.junit.Before
+import org.junit.Test
+import java.net.InetSocketAddress
+import java.net.Proxy
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class VisionHttpTest {
+    private val server = MockWebServer()
+    private val connects = AtomicInteger()
+    private val countingListener = object : EventListener() {
+        override fun connectStart(call: Call, inetSocketAddress: InetSocketAddress, proxy: Proxy) {
+            connects.incrementAndGet()
+        }
+    }
+
+    @Before
+    fun setUp() {
+        server.start()
+        VisionHttp.client.connectionPool.evictAll()
+    }
+
+    @After
+    fun tearDown() {
+        server.close()
+    }
+
+    @Test
+    fun connectionIsReusedAcrossRuns() {
+        // newBuilder() shares the pool and dispatcher of the app-wide client.
+        val client = VisionHttp.client.newBuilder().eventListener(countingListener).build()
+
+        repeat(3) {
+            server.enqueue(MockResponse.Builder().body("{\"responses\":[{}]}").build())
+            val request = Request.Builder()
+                .url(server.url("/v1/images:annotate"))
+                .post("{}".toRequestBody())
+                .build()
+            client.newCall(request).execute().use {
+                assertEquals(200, it.code)
+                it.body.string()
+            }
+        }
+
+        assertEquals(1, connects.get())
+        assertEquals(1, VisionHttp.client.connectionPool.connectionCount())
+    }
+
+    @Test
+    fun prewarmedConnectionIsPickedUpByFirstRun() {
+        server.enqueue(MockResponse.Builder().build())
+        server.enqueue(MockResponse.Builder().body("{}").build())
+
+        VisionHttp.prewarm(server.url("/").toString())
+        assertNotNull(server.takeRequest(5, TimeUnit.SECONDS))
+        awaitIdleConnection()
+
+        val client = VisionHttp.client.newBuilder().eventListener(countingListener).build()
+        val request = Request.Builder()
+            .url(server.url("/v1/images:annotate"))
+            .post("{}".toRequestBody())
+            .build()
+        client.newCall(request).execute().use { it.body.string() }
+
+        assertEquals(0, connects.get())
+    }
+
+    private fun awaitIdleConnection() {
+        val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5)
+        while (VisionHttp.client.connectionPool.idleConnectionCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10)
+        }
+    }
+}
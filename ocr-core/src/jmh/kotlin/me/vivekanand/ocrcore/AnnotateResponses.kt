@@ -0,0 +1,56 @@
+package me.vivekanand.ocrcore
+
+/**
+ * Synthesises images:annotate responses shaped like real TEXT_DETECTION output: the full
+ * text, one textAnnotation per word, then the fullTextAnnotation page/block/word/symbol tree
+ * that dominates the payload size.
+ */
+internal object AnnotateResponses {
+
+    fun generate(words: Int): ByteArray {
+        val text = StringBuilder()
+        repeat(words) { i ->
+            text.append(word(i)).append(if (i % 8 == 7) "\\n" else " ")
+        }
+        val sb = StringBuilder(words * 900)
+        sb.append("{\"responses\":[{\"textAnnotations\":[")
+        sb.append("{\"locale\":\"en\",\"description\":\"").append(text).append("\",")
+        poly(sb, "boundingPoly", 0, 0, 1080, 2400)
+        sb.append('}')
+        repeat(words) { i ->
+            sb.append(",{\"description\":\"").append(word(i)).append("\",")
+            poly(sb, "boundingPoly", x(i), y(i), x(i) + 110, y(i) + 36)
+            sb.append('}')
+        }
+        sb.append("],\"fullTextAnnotation\":{\"pages\":[{\"width\":1080,\"height\":2400,\"blocks\":[")
+        repeat(words) { i ->
+            if (i > 0) sb.append(',')
+            sb.append("{\"paragraphs\":[{\"words\":[{")
+            poly(sb, "boundingBox", x(i), y(i), x(i) + 110, y(i) + 36)
+            sb.append(",\"symbols\":[")
+            word(i).forEachIndexed { c, ch ->
+                if (c > 0) sb.append(',')
+                sb.append("{\"text\":\"").append(ch).append("\",\"confidence\":0.98,")
+                poly(sb, "boundingBox", x(i) + c * 14, y(i), x(i) + c * 14 + 14, y(i) + 36)
+                sb.append('}')
+            }
+            sb.append("]}]}]}")
+        }
+        sb.append("]}],\"text\":\"").append(text).append("\"}}]}")
+        return sb.toString().toByteArray()
+    }
+
+    private val vocabulary = arrayOf("Battery", "42%", "Charging", "Wi-Fi", "12:45", "Settings", "Do", "not", "disturb")
+
+    private fun word(i: Int) = vocabulary[i % vocabulary.size]
+    private fun x(i: Int) = 12 + (i % 8) * 130
+    private fun y(i: Int) = 8 + (i / 8) * 48
+
+    private fun poly(sb: StringBuilder, name: String, left: Int, top: Int, right: Int, bottom: Int) {
+        sb.append('"').append(name).append("\":{\"vertices\":[")
+            .append("{\"x\":").append(left).append(",\"y\":").append(top).append("},")
+            .append("{\"x\":").append(right).append(",\"y\":").append(top).append("},")
+            .append("{\"x\":").append(right).append(",\"y\":").append(bottom).append("},")
+            .append("{\"x\":").append(left).append(",\"y\":").append(bottom).append("}]}")
+    }
+}
@@ -0,0 +1,39 @@
+package me.vivekanand.ocrcore
+
+import okio.Buffer
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import java.util.Base64
+
+/** Encode throughput of [Base64EncodingStream] against the JDK encoder on the same bytes. */
+@State(Scope.Benchmark)
+open class Base64Benchmark {
+
+    @Param("4096", "1048576")
+    @JvmField
+    var inputBytes: Int = 0
+
+    private lateinit var input: ByteArray
+    private val sink = Buffer()
+
+    @Setup
+    fun setUp() {
+        input = ByteArray(inputBytes) { (it * 31).toByte() }
+    }
+
+    @Benchmark
+    fun encodingStream(): Long {
+        val out = Base64EncodingStream(sink)
+        out.write(input, 0, input.size)
+        out.finish()
+        val size = sink.size
+        sink.clear()
+        return size
+    }
+
+    @Benchmark
+    fun jdkEncoder(): Int = Base64.getEncoder().encode(input).size
+}
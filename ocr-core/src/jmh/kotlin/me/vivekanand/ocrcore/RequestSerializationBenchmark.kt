@@ -0,0 +1,54 @@
+package me.vivekanand.ocrcore
+
+import okio.blackholeSink
+import okio.buffer
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import java.io.ByteArrayOutputStream
+import java.util.Base64
+
+/**
+ * Writing an annotate request for one JPEG-sized payload: [AnnotateRequestBody] against the
+ * old Base64-string-then-JSON-string path. Run with the gc profiler to see allocation per op.
+ */
+@State(Scope.Benchmark)
+open class RequestSerializationBenchmark {
+
+    @Param("65536", "1048576", "6291456")
+    @JvmField
+    var imageBytes: Int = 0
+
+    private lateinit var payload: ImagePayload
+
+    @Setup
+    fun setUp() {
+        val chunk = ByteArray(16 * 1024) { it.toByte() }
+        val total = imageBytes
+        payload = ImagePayload { out ->
+            var remaining = total
+            while (remaining > 0) {
+                val n = minOf(chunk.size, remaining)
+                out.write(chunk, 0, n)
+                remaining -= n
+            }
+        }
+    }
+
+    @Benchmark
+    fun streamingBody() {
+        blackholeSink().buffer().use { AnnotateRequestBody(listOf(payload)).writeTo(it) }
+    }
+
+    @Benchmark
+    fun legacyStrings() {
+        val stream = ByteArrayOutputStream()
+        payload.writeTo(stream)
+        val base64 = Base64.getEncoder().encodeToString(stream.toByteArray())
+        val json = "{ \"requests\": [ { \"image\": { \"content\": \"" + base64 +
+            "\" }, \"features\": [ { \"type\": \"TEXT_DETECTION\" } ] } ] }"
+        blackholeSink().buffer().use { it.writeUtf8(json) }
+    }
+}
@@ -0,0 +1,40 @@
+package me.vivekanand.ocrcore
+
+import com.squareup.moshi.JsonReader
+import okio.Buffer
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * [AnnotateResponseParser] against a full Moshi object tree (what a reflective adapter or
+ * org.json would build) on small, medium and huge responses.
+ */
+@State(Scope.Benchmark)
+open class ResponseParsingBenchmark {
+
+    @Param("small", "medium", "huge")
+    lateinit var size: String
+
+    private lateinit var response: ByteArray
+
+    @Setup
+    fun setUp() {
+        response = AnnotateResponses.generate(
+            when (size) {
+                "small" -> 16
+                "medium" -> 400
+                else -> 12_000
+            }
+        )
+    }
+
+    @Benchmark
+    fun streamingParser(): List<AnnotateResult> =
+        AnnotateResponseParser.parse(Buffer().write(response))
+
+    @Benchmark
+    fun objectTree(): Any? = JsonReader.of(Buffer().write(response)).readJsonValue()
+}
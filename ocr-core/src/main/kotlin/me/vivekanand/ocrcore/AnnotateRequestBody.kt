@@ -0,0 +1,57 @@
+package me.vivekanand.ocrcore
+
+import okhttp3.MediaType
+import okhttp3.MediaType.Companion.toMediaType
+import okhttp3.RequestBody
+import okio.BufferedSink
+import java.io.OutputStream
+
+/** Produces the encoded image bytes (JPEG, PNG, ...) on demand. */
+fun interface ImagePayload {
+    fun writeTo(out: OutputStream)
+
+    /** Expected size of what [writeTo] produces, or -1 when it is only known after encoding. */
+    fun sizeHint(): Long = -1
+}
+
+/**
+ * images:annotate request body that writes the JSON envelope and Base64-encodes each image
+ * as it is produced, straight into the socket. No full copy of the image, its Base64 form
+ * or the JSON document is ever held in memory. The body is replayable: every [writeTo]
+ * re-runs the payloads.
+ */
+class AnnotateRequestBody @JvmOverloads constructor(
+    private val images: List<ImagePayload>,
+    private val feature: String = "TEXT_DETECTION",
+) : RequestBody() {
+
+    override fun contentType(): MediaType = JSON
+
+    override fun writeTo(sink: BufferedSink) {
+        sink.writeUtf8("{\"requests\":[")
+        images.forEachIndexed { index, image ->
+            if (index > 0) sink.writeUtf8(",")
+            sink.writeUtf8("{\"image\":{\"content\":\"")
+            val base64 = Base64EncodingStream(sink)
+            image.writeTo(base64)
+            base64.finish()
+            sink.writeUtf8("\"},\"features\":[{\"type\":\"")
+                .writeUtf8(feature)
+                .writeUtf8("\"}]}")
+        }
+        sink.writeUtf8("]}")
+    }
+
+    companion object {
+        /** Cloud Vision rejects images:annotate JSON bodies over 10 MB. */
+        const val MAX_REQUEST_BYTES = 10L * 1024 * 1024
+
+        // The JSON wrapped around each image's Base64 content.
+        private const val ENTRY_OVERHEAD_BYTES = 96L
+
+        private val JSON = "application/json; charset=utf-8".toMediaType()
+
+        /** Bytes one image of [imageBytes] adds to a request body once Base64-encoded. */
+        fun encodedSize(imageBytes: Long): Long = (imageBytes + 2) / 3 * 4 + ENTRY_OVERHEAD_BYTES
+    }
+}
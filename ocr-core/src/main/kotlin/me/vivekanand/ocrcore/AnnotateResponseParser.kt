@@ -0,0 +1,211 @@
+package me.vivekanand.ocrcore
+
+import com.squareup.moshi.JsonReader
+import okio.BufferedSource
+
+data class AnnotateResult(
+    val text: String?,
+    val error: String? = null,
+    /** Per-word boxes from textAnnotations[1..]; only filled when parsing with `words = true`. */
+    val words: List<TextBlock>? = null,
+)
+
+/**
+ * Pull parser for images:annotate responses. It reads only the recognised text (and error
+ * messages) and skips per-symbol geometry without building a tree. Once the last expected
+ * response has its text, it stops reading, so the rest of a multi-MB body is never lexed.
+ * With `words = true` it also keeps the word-level boxes, which come before the much larger
+ * fullTextAnnotation, so that is still skipped.
+ */
+object AnnotateResponseParser {
+    private val TOP = JsonReader.Options.of("responses", "error")
+    private val RESPONSE = JsonReader.Options.of("textAnnotations", "fullTextAnnotation", "error")
+    private val FULL_TEXT = JsonReader.Options.of("text")
+    private val ANNOTATION = JsonReader.Options.of("description", "boundingPoly")
+    private val POLY = JsonReader.Options.of("vertices")
+    private val VERTEX = JsonReader.Options.of("x", "y")
+    private val ERROR = JsonReader.Options.of("message")
+
+    fun parse(source: BufferedSource, expectedResponses: Int = 1, words: Boolean = false): List<AnnotateResult> {
+        val reader = JsonReader.of(source)
+        val results = ArrayList<AnnotateResult>(expectedResponses)
+        reader.beginObject()
+        while (reader.hasNext()) {
+            when (reader.selectName(TOP)) {
+                0 -> {
+                    reader.beginArray()
+                    while (reader.hasNext()) {
+                        val last = results.size + 1 >= expectedResponses
+                        results += readResponse(reader, stopEarly = last, words = words)
+                        if (last) return results
+                    }
+                    reader.endArray()
+                }
+                1 -> return listOf(AnnotateResult(null, readErrorMessage(reader)))
+                else -> {
+                    reader.skipName()
+                    reader.skipValue()
+                }
+            }
+        }
+        return results
+    }
+
+    // Error bodies of non-2xx replies: {"error": {"code": 400, "message": "..."}}
+    fun parseError(source: BufferedSource): String? = try {
+        parse(source).firstOrNull()?.error
+    } catch (e: Exception) {
+        null
+    }
+
+    private fun readResponse(reader: JsonReader, stopEarly: Boolean, words: Boolean): AnnotateResult {
+        var text: String? = null
+        var error: String? = null
+        var boxes: List<TextBlock>? = null
+        reader.beginObject()
+        while (reader.hasNext()) {
+            when (reader.selectName(RESPONSE)) {
+                // textAnnotations[0].description carries the full text and arrives first.
+                0 -> if (words) {
+                    val wordBoxes = ArrayList<TextBlock>()
+                    text = readAnnotations(reader, wordBoxes) ?: text
+                    boxes = wordBoxes
+                } else {
+                    text = text ?: readFirstDescription(reader, stopEarly)
+                }
+                1 -> text = readFullText(reader, stopEarly) ?: text
+                2 -> error = readErrorMessage(reader)
+                else -> {
+                    reader.skipName()
+                    reader.skipValue()
+                }
+            }
+            if (stopEarly && text != null) return AnnotateResult(text, error, boxes)
+        }
+        reader.endObject()
+        return AnnotateResult(text, error, boxes)
+    }
+
+    private fun readFirstDescription(reader: JsonReader, stopEarly: Boolean): String? {
+        var description: String? = null
+        reader.beginArray()
+        if (reader.hasNext()) {
+            reader.beginObject()
+            while (reader.hasNext()) {
+                if (reader.selectName(ANNOTATION) == 0) {
+                    description = reader.nextString()
+                    if (stopEarly) return description
+                } else {
+                    reader.skipName()
+                    reader.skipValue()
+                }
+            }
+            reader.endObject()
+        }
+        while (reader.hasNext()) reader.skipValue()
+        reader.endArray()
+        return description
+    }
+
+    // Reads the whole textAnnotations array: [0] is the full text, the rest are words.
+    private fun readAnnotations(reader: JsonReader, words: MutableList<TextBlock>): String? {
+        var fullText: String? = null
+        var first = true
+        reader.beginArray()
+        while (reader.hasNext()) {
+            var description: String? = null
+            var box: IntArray? = null
+            reader.beginObject()
+            while (reader.hasNext()) {
+                when (reader.selectName(ANNOTATION)) {
+                    0 -> description = reader.nextString()
+                    1 -> if (first) reader.skipValue() else box = readBoundingPoly(reader)
+                    else -> {
+                        reader.skipName()
+                        reader.skipValue()
+                    }
+                }
+            }
+            reader.endObject()
+            if (first) {
+                fullText = description
+                first = false
+            } else if (description != null && box != null) {
+                words += TextBlock(description, box[0], box[1], box[2], box[3])
+            }
+        }
+        reader.endArray()
+        return fullText
+    }
+
+    /** Axis-aligned bounds of the polygon as [left, top, right, bottom]; omitted coordinates are 0. */
+    private fun readBoundingPoly(reader: JsonReader): IntArray? {
+        var left = Int.MAX_VALUE
+        var top = Int.MAX_VALUE
+        var right = Int.MIN_VALUE
+        var bottom = Int.MIN_VALUE
+        reader.beginObject()
+        while (reader.hasNext()) {
+            if (reader.selectName(POLY) != 0) {
+                reader.skipName()
+                reader.skipValue()
+                continue
+            }
+            reader.beginArray()
+            while (reader.hasNext()) {
+                var x = 0
+                var y = 0
+                reader.beginObject()
+                while (reader.hasNext()) {
+                    when (reader.selectName(VERTEX)) {
+                        0 -> x = reader.nextInt()
+                        1 -> y = reader.nextInt()
+                        else -> {
+                            reader.skipName()
+                            reader.skipValue()
+                        }
+                    }
+                }
+                reader.endObject()
+                left = minOf(left, x)
+                top = minOf(top, y)
+                right = maxOf(right, x)
+                bottom = maxOf(bottom, y)
+            }
+            reader.endArray()
+        }
+        reader.endObject()
+        return if (left > right) null else intArrayOf(left, top, right, bottom)
+    }
+
+    private fun readFullText(reader: JsonReader, stopEarly: Boolean): String? {
+        var text: String? = null
+        reader.beginObject()
+        while (reader.hasNext()) {
+            if (reader.selectName(FULL_TEXT) == 0) {
+                text = reader.nextString()
+                if (stopEarly) return text
+            } else {
+                reader.skipName()
+                reader.skipValue()
+            }
+        }
+        reader.endObject()
+        return text
+    }
+
+    private fun readErrorMessage(reader: JsonReader): String? {
+        var message: String? = null
+        reader.beginObject()
+        while (reader.hasNext()) {
+            if (reader.selectName(ERROR) == 0) {
+                message = reader.nextString()
+            } else {
+                reader.skipName()
+                reader.skipValue()
+            }
+        }
+        reader.endObject()
+        return message
+    }
+}
@@ -0,0 +1,89 @@
+package me.vivekanand.ocrcore
+
+import okio.BufferedSink
+import java.io.OutputStream
+
+/**
+ * Base64-encodes (standard alphabet, no line wrapping) everything written to it straight
+ * into [sink]. Only a fixed 4 KiB scratch buffer is held, whatever the input size.
+ * Call [finish] to emit the padding; the underlying sink is never closed.
+ */
+class Base64EncodingStream(private val sink: BufferedSink) : OutputStream() {
+    private val out = ByteArray(4096)
+    private val single = ByteArray(1)
+    private var outPos = 0
+    private var carry = 0
+    private var carryLen = 0
+
+    override fun write(b: Int) {
+        single[0] = b.toByte()
+        write(single, 0, 1)
+    }
+
+    override fun write(b: ByteArray, off: Int, len: Int) {
+        var i = off
+        val end = off + len
+        while (carryLen in 1..2 && i < end) {
+            carry = (carry shl 8) or (b[i++].toInt() and 0xff)
+            if (++carryLen == 3) {
+                emit(carry)
+                carry = 0
+                carryLen = 0
+            }
+        }
+        while (end - i >= 3) {
+            emit(
+                ((b[i].toInt() and 0xff) shl 16) or
+                    ((b[i + 1].toInt() and 0xff) shl 8) or
+                    (b[i + 2].toInt() and 0xff)
+            )
+            i += 3
+        }
+        while (i < end) {
+            carry = (carry shl 8) or (b[i++].toInt() and 0xff)
+            carryLen++
+        }
+    }
+
+    fun finish() {
+        if (carryLen > 0) {
+            if (outPos + 4 > out.size) flushBuffer()
+            val v = carry shl (if (carryLen == 1) 16 else 8)
+            out[outPos++] = ALPHABET[(v shr 18) and 0x3f]
+            out[outPos++] = ALPHABET[(v shr 12) and 0x3f]
+            out[outPos++] = if (carryLen == 2) ALPHABET[(v shr 6) and 0x3f] else PAD
+            out[outPos++] = PAD
+            carry = 0
+            carryLen = 0
+        }
+        flushBuffer()
+    }
+
+    override fun flush() {
+        flushBuffer()
+    }
+
+    override fun close() {
+        finish()
+    }
+
+    private fun emit(v: Int) {
+        if (outPos + 4 > out.size) flushBuffer()
+        out[outPos++] = ALPHABET[(v shr 18) and 0x3f]
+        out[outPos++] = ALPHABET[(v shr 12) and 0x3f]
+        out[outPos++] = ALPHABET[(v shr 6) and 0x3f]
+        out[outPos++] = ALPHABET[v and 0x3f]
+    }
+
+    private fun flushBuffer() {
+        if (outPos > 0) {
+            sink.write(out, 0, outPos)
+            outPos = 0
+        }
+    }
+
+    private companion object {
+        val ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toByteArray()
+        const val PAD = '='.code.toByte()
+    }
+}
@@ -0,0 +1,52 @@
+package me.vivekanand.ocrcore
+
+import kotlin.math.roundToInt
+
+data class PixelRect(val left: Int, val top: Int, val right: Int, val bottom: Int) {
+    val width: Int get() = right - left
+    val height: Int get() = bottom - top
+}
+
+/**
+ * A labelled part of the image to recognise on its own. It is written as
+ * `label:x,y,width,height`, and several regions are separated by `;`. Values with a
+ * decimal point are fractions of the image size (`status:0.0,0.0,1.0,0.08`). Otherwise
+ * they are absolute pixels (`dialog:120,900,840,400`).
+ */
+data class CropRegion(
+    val label: String,
+    val x: Double,
+    val y: Double,
+    val width: Double,
+    val height: Double,
+    val fractional: Boolean,
+) {
+    /** Resolves to pixels and clips to the image; null when nothing of it is inside. */
+    fun resolve(imageWidth: Int, imageHeight: Int): PixelRect? {
+        val sx = if (fractional) imageWidth.toDouble() else 1.0
+        val sy = if (fractional) imageHeight.toDouble() else 1.0
+        val left = (x * sx).roundToInt().coerceIn(0, imageWidth)
+        val top = (y * sy).roundToInt().coerceIn(0, imageHeight)
+        val right = ((x + width) * sx).roundToInt().coerceIn(0, imageWidth)
+        val bottom = ((y + height) * sy).roundToInt().coerceIn(0, imageHeight)
+        return if (right > left && bottom > top) PixelRect(left, top, right, bottom) else null
+    }
+
+    companion object {
+        @JvmStatic
+        fun parseAll(spec: String?): List<CropRegion> {
+            if (spec.isNullOrBlank()) return emptyList()
+            return spec.split(';').map { it.trim() }.filter { it.isNotEmpty() }.mapIndexed { index, part ->
+                val colon = part.lastIndexOf(':')
+                val label = if (colon >= 0) part.substring(0, colon).trim() else "region${index + 1}"
+                val numbers = part.substring(colon + 1).split(',').map { it.trim() }
+                require(numbers.size == 4) { "Region '$part' needs x,y,width,height" }
+                val values = numbers.map { it.toDouble() }
+                CropRegion(
+                    label, values[0], values[1], values[2], values[3],
+                    fractional = numbers.any { '.' in it }
+                )
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package me.vivekanand.ocrcore
+
+import java.io.File
+import java.io.InputStream
+import java.io.OutputStream
+
+/** Uploads the original file bytes as they are: no bitmap, no re-encode. */
+class FilePayload(private val file: File) : ImagePayload {
+    override fun writeTo(out: OutputStream) {
+        file.inputStream().use { it.copyTo(out, COPY_BUFFER) }
+    }
+
+    override fun sizeHint(): Long = file.length()
+}
+
+/** Like [FilePayload] for sources that can only be opened as a stream, e.g. a content URI. */
+class StreamPayload @JvmOverloads constructor(
+    private val length: Long = -1,
+    private val open: () -> InputStream,
+) : ImagePayload {
+    override fun writeTo(out: OutputStream) {
+        open().use { it.copyTo(out, COPY_BUFFER) }
+    }
+
+    override fun sizeHint(): Long = length
+}
+
+private const val COPY_BUFFER = 64 * 1024
@@ -0,0 +1,26 @@
+package me.vivekanand.ocrcore
+
+/**
+ * When to fire a hedged duplicate and how long to wait overall, both derived from the
+ * endpoint's recent latency. Until [minSamples] requests have been seen, the defaults apply.
+ */
+data class HedgePolicy(
+    val hedgePercentile: Double = 0.95,
+    val deadlinePercentile: Double = 0.99,
+    val deadlineMultiplier: Double = 3.0,
+    val minSamples: Int = 20,
+    val defaultHedgeMillis: Long = 2_500,
+    val defaultDeadlineMillis: Long = 5_000,
+    val minDeadlineMillis: Long = 2_000,
+    val maxDeadlineMillis: Long = 30_000,
+) {
+    fun hedgeAfterMillis(latency: LatencyHistogram): Long =
+        if (latency.count() < minSamples) defaultHedgeMillis
+        else latency.percentile(hedgePercentile) ?: defaultHedgeMillis
+
+    fun deadlineMillis(latency: LatencyHistogram): Long {
+        if (latency.count() < minSamples) return defaultDeadlineMillis
+        val tail = latency.percentile(deadlinePercentile) ?: return defaultDeadlineMillis
+        return (tail * deadlineMultiplier).toLong().coerceIn(minDeadlineMillis, maxDeadlineMillis)
+    }
+}
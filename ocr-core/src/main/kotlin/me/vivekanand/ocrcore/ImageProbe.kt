@@ -0,0 +1,127 @@
+package me.vivekanand.ocrcore
+
+import okio.BufferedSource
+import okio.ByteString.Companion.decodeHex
+import okio.ByteString.Companion.encodeUtf8
+import java.io.IOException
+
+data class ImageHeader(
+    val format: Format,
+    val width: Int,
+    val height: Int,
+    /** EXIF orientation tag value, 1 (upright) when absent. */
+    val orientation: Int = 1,
+) {
+    enum class Format { JPEG, PNG }
+}
+
+/**
+ * Reads format, dimensions and EXIF orientation from the first bytes of an image without
+ * decoding any pixels. For a JPEG that means walking the marker segments up to the first
+ * SOFn frame header; for a PNG, the IHDR chunk.
+ */
+object ImageProbe {
+    /**
+     * Cloud Vision caps a JSON request at 10 MB, which Base64 turns into ~7.5 MB of image.
+     * A batch holding a pass-through image is split by [AnnotateRequestBody.encodedSize]
+     * before it reaches that limit.
+     */
+    const val MAX_PASS_THROUGH_BYTES = 4L * 1024 * 1024
+
+    private val PNG_SIGNATURE = "89504e470d0a1a0a".decodeHex()
+    private val JPEG_SOI = "ffd8".decodeHex()
+    private val EXIF = "Exif\u0000\u0000".encodeUtf8()
+
+    /** Null when the stream is neither JPEG nor PNG, or its header is damaged. */
+    fun probe(source: BufferedSource): ImageHeader? = try {
+        when {
+            source.rangeEquals(0, PNG_SIGNATURE) -> probePng(source)
+            source.rangeEquals(0, JPEG_SOI) -> {
+                source.skip(2)
+                probeJpeg(source)
+            }
+            else -> null
+        }
+    } catch (e: IOException) {
+        null
+    }
+
+    /**
+     * True when the original bytes can be uploaded as they are: a format Cloud Vision reads,
+     * no larger than [pixelBudget] (the decode path would otherwise downsample it) and small
+     * enough to fit in a request. With a [targetBytes] upload budget set (> 0), the file must
+     * also fit that budget; otherwise re-encoding is what keeps the upload small.
+     */
+    @JvmOverloads
+    fun canPassThrough(header: ImageHeader?, byteCount: Long, pixelBudget: Int, targetBytes: Int = 0): Boolean =
+        header != null && byteCount in 1..MAX_PASS_THROUGH_BYTES &&
+            (targetBytes <= 0 || byteCount <= targetBytes) &&
+            header.width.toLong() * header.height <= pixelBudget
+
+    private fun probePng(source: BufferedSource): ImageHeader? {
+        source.skip(8)
+        source.readInt() // IHDR length
+        if (source.readUtf8(4) != "IHDR") return null
+        return ImageHeader(ImageHeader.Format.PNG, source.readInt(), source.readInt())
+    }
+
+    private fun probeJpeg(source: BufferedSource): ImageHeader? {
+        var orientation = 1
+        while (true) {
+            if (source.readByte() != 0xFF.toByte()) return null
+            var marker = source.readByte().toInt() and 0xFF
+            while (marker == 0xFF) marker = source.readByte().toInt() and 0xFF // fill bytes
+            // Standalone markers carry no length.
+            if (marker == 0x01 || marker in 0xD0..0xD7) continue
+            if (marker == 0xD9 || marker == 0xDA) return null // EOI or scan data before any SOF
+            val length = (source.readShort().toInt() and 0xFFFF) - 2
+            if (length < 0) return null
+            when {
+                marker == 0xE1 && length >= 14 && source.rangeEquals(0, EXIF) -> {
+                    val segment = source.readByteArray(length.toLong())
+                    orientation = exifOrientation(segment, EXIF.size) ?: orientation
+                }
+                isStartOfFrame(marker) -> {
+                    source.skip(1) // sample precision
+                    val height = source.readShort().toInt() and 0xFFFF
+                    val width = source.readShort().toInt() and 0xFFFF
+                    return ImageHeader(ImageHeader.Format.JPEG, width, height, orientation)
+                }
+                else -> source.skip(length.toLong())
+            }
+        }
+    }
+
+    // SOF0-SOF15, minus DHT (C4), JPG (C8) and DAC (CC), which share the range.
+    private fun isStartOfFrame(marker: Int) =
+        marker in 0xC0..0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC
+
+    /** Looks up tag 0x0112 in IFD0 of the TIFF structure that starts at [tiff]. */
+    internal fun exifOrientation(data: ByteArray, tiff: Int): Int? {
+        if (data.size < tiff + 8) return null
+        val little = when {
+            data[tiff] == 'I'.code.toByte() && data[tiff + 1] == 'I'.code.toByte() -> true
+            data[tiff] == 'M'.code.toByte() && data[tiff + 1] == 'M'.code.toByte() -> false
+            else -> return null
+        }
+        fun u16(at: Int): Int = if (little) {
+            (data[at].toInt() and 0xFF) or ((data[at + 1].toInt() and 0xFF) shl 8)
+        } else {
+            ((data[at].toInt() and 0xFF) shl 8) or (data[at + 1].toInt() and 0xFF)
+        }
+        fun u32(at: Int): Long = if (little) {
+            u16(at).toLong() or (u16(at + 2).toLong() shl 16)
+        } else {
+            (u16(at).toLong() shl 16) or u16(at + 2).toLong()
+        }
+        val ifd = tiff + u32(tiff + 4)
+        if (ifd + 2 > data.size) return null
+        val entries = u16(ifd.toInt())
+        for (i in 0 until entries) {
+            val entry = ifd.toInt() + 2 + i * 12
+            if (entry + 12 > data.size) return null
+            if (u16(entry) == 0x0112) return u16(entry + 8).takeIf { it in 1..8 }
+        }
+        return null
+    }
+}
@@ -0,0 +1,27 @@
+package me.vivekanand.ocrcore
+
+/** Rolling window over the last [capacity] latency samples, in milliseconds. */
+class LatencyHistogram(private val capacity: Int = 256) {
+    private val samples = LongArray(capacity)
+    private var next = 0
+    private var size = 0
+
+    @Synchronized
+    fun record(millis: Long) {
+        samples[next] = millis
+        next = (next + 1) % capacity
+        if (size < capacity) size++
+    }
+
+    @Synchronized
+    fun count(): Int = size
+
+    /** Nearest-rank percentile of the window, [p] in 0..1. Null while the window is empty. */
+    @Synchronized
+    fun percentile(p: Double): Long? {
+        if (size == 0) return null
+        val sorted = samples.copyOf(size).apply { sort() }
+        val rank = Math.ceil(p * size).toInt().coerceIn(1, size)
+        return sorted[rank - 1]
+    }
+}
@@ -0,0 +1,69 @@
+package me.vivekanand.ocrcore
+
+/**
+ * Finds the highest encoder quality whose output fits a byte budget. Encoded size grows with
+ * quality (not strictly, but close enough), so this is a binary search over
+ * [minQuality]..[maxQuality].
+ */
+class QualitySearch(val minQuality: Int = 40, val maxQuality: Int = 95) {
+
+    /**
+     * @property fits false when even [minQuality] was over budget; [quality] is then the minimum.
+     * @property attempts encodes spent, including the final one.
+     */
+    class Choice(val quality: Int, val bytes: Int, val fits: Boolean, val attempts: Int)
+
+    /**
+     * [encode] encodes at a quality and returns the size. Its last call is always at the
+     * returned quality, so the caller's output buffer holds the chosen encoding.
+     *
+     * [hint] is tried first, e.g. the quality chosen last time for this resolution. If it fits
+     * using at least 3/4 of the budget it is taken as is, so a repeat costs one encode; with
+     * more room to spare the search continues above it.
+     */
+    fun search(targetBytes: Int, hint: Int? = null, encode: (quality: Int) -> Int): Choice {
+        var attempts = 0
+        var low = minQuality
+        var high = maxQuality
+        var best = -1
+        var bestBytes = 0
+        var last = -1
+        var lastBytes = 0
+
+        fun tryQuality(quality: Int): Int {
+            attempts++
+            last = quality
+            lastBytes = encode(quality)
+            return lastBytes
+        }
+
+        if (hint != null && hint in minQuality..maxQuality) {
+            val bytes = tryQuality(hint)
+            if (bytes <= targetBytes) {
+                if (bytes >= targetBytes - targetBytes / 4) return Choice(hint, bytes, true, attempts)
+                best = hint
+                bestBytes = bytes
+                low = hint + 1
+            } else {
+                high = hint - 1
+            }
+        }
+        while (low <= high) {
+            val mid = (low + high + 1) / 2
+            val bytes = tryQuality(mid)
+            if (bytes <= targetBytes) {
+                best = mid
+                bestBytes = bytes
+                low = mid + 1
+            } else {
+                high = mid - 1
+            }
+        }
+        if (best < 0) {
+            if (last != minQuality) tryQuality(minQuality)
+            return Choice(minQuality, lastBytes, false, attempts)
+        }
+        if (last != best) bestBytes = tryQuality(best)
+        return Choice(best, bestBytes, true, attempts)
+    }
+}
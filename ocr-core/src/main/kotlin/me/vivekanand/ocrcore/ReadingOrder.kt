@@ -0,0 +1,36 @@
+package me.vivekanand.ocrcore
+
+/** A recognised word or block with its axis-aligned bounding box in image pixels. */
+data class TextBlock(val text: String, val left: Int, val top: Int, val right: Int, val bottom: Int)
+
+/**
+ * Orders text blocks the way a person reads them. A block joins the current line when its
+ * vertical centre falls inside the line's band. Lines then run top to bottom, and blocks
+ * within a line left to right.
+ */
+object ReadingOrder {
+
+    fun lines(blocks: List<TextBlock>): List<List<TextBlock>> {
+        val lines = ArrayList<MutableList<TextBlock>>()
+        var bandTop = 0
+        var bandBottom = -1
+        for (block in blocks.sortedWith(compareBy({ it.top }, { it.left }))) {
+            val center = (block.top + block.bottom) / 2
+            if (lines.isNotEmpty() && center in bandTop..bandBottom) {
+                lines.last().add(block)
+                bandBottom = maxOf(bandBottom, block.bottom)
+            } else {
+                lines.add(mutableListOf(block))
+                bandTop = block.top
+                bandBottom = block.bottom
+            }
+        }
+        return lines.map { line -> line.sortedBy { it.left } }
+    }
+
+    fun sort(blocks: List<TextBlock>): List<TextBlock> = lines(blocks).flatten()
+
+    /** Words on a line are joined by spaces, lines by newlines. */
+    fun toText(blocks: List<TextBlock>): String =
+        lines(blocks).joinToString("\n") { line -> line.joinToString(" ") { it.text } }
+}
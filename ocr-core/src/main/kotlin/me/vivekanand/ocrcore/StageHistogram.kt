@@ -0,0 +1,60 @@
+package me.vivekanand.ocrcore
+
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * Fixed-memory, lock-free histogram of non-negative values. Each power of two is split into
+ * four sub-buckets, so a reported percentile is within ~19% of the true value and memory
+ * stays at 256 counters, however many samples are recorded.
+ */
+class StageHistogram {
+    private val counts = AtomicLongArray(BUCKETS)
+
+    fun record(value: Long) {
+        counts.incrementAndGet(bucketOf(value.coerceAtLeast(0)))
+    }
+
+    fun count(): Long {
+        var total = 0L
+        for (i in 0 until BUCKETS) total += counts.get(i)
+        return total
+    }
+
+    /** Upper bound of the bucket holding the [p] quantile, or 0 when empty. */
+    fun percentile(p: Double): Long {
+        val snapshot = LongArray(BUCKETS) { counts.get(it) }
+        val total = snapshot.sum()
+        if (total == 0L) return 0
+        val rank = Math.ceil(p * total).toLong().coerceIn(1, total)
+        var seen = 0L
+        for (i in 0 until BUCKETS) {
+            seen += snapshot[i]
+            if (seen >= rank) return upperBound(i)
+        }
+        return upperBound(BUCKETS - 1)
+    }
+
+    fun reset() {
+        for (i in 0 until BUCKETS) counts.set(i, 0)
+    }
+
+    companion object {
+        private const val SUB_BITS = 2
+        private const val BUCKETS = 64 shl SUB_BITS
+
+        internal fun bucketOf(value: Long): Int {
+            if (value < (1L shl SUB_BITS)) return value.toInt()
+            val exponent = 63 - java.lang.Long.numberOfLeadingZeros(value)
+            val mantissa = (value ushr (exponent - SUB_BITS)).toInt() and ((1 shl SUB_BITS) - 1)
+            return ((exponent - SUB_BITS + 1) shl SUB_BITS) + mantissa
+        }
+
+        internal fun upperBound(bucket: Int): Long {
+            if (bucket < (1 shl SUB_BITS)) return bucket.toLong()
+            val exponent = (bucket shr SUB_BITS) + SUB_BITS - 1
+            val mantissa = (bucket and ((1 shl SUB_BITS) - 1)).toLong()
+            val step = 1L shl (exponent - SUB_BITS)
+            return ((1L shl exponent) + (mantissa + 1) * step) - 1
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package me.vivekanand.ocrcore
+
+/** Compares recognised text against a reference reading of the same image. */
+object TextAccuracy {
+
+    /**
+     * 1 - (character edit distance / reference length), floored at 0. Runs of whitespace are
+     * collapsed first, because line breaks move around with the layout.
+     */
+    fun characterAccuracy(reference: String, actual: String): Double {
+        val a = normalize(reference)
+        val b = normalize(actual)
+        if (a.isEmpty()) return if (b.isEmpty()) 1.0 else 0.0
+        return (1.0 - editDistance(a, b).toDouble() / a.length).coerceAtLeast(0.0)
+    }
+
+    internal fun editDistance(a: String, b: String): Int {
+        var previous = IntArray(b.length + 1) { it }
+        var current = IntArray(b.length + 1)
+        for (i in 1..a.length) {
+            current[0] = i
+            for (j in 1..b.length) {
+                val substitution = previous[j - 1] + if (a[i - 1] == b[j - 1]) 0 else 1
+                current[j] = minOf(substitution, previous[j] + 1, current[j - 1] + 1)
+            }
+            val swap = previous
+            previous = current
+            current = swap
+        }
+        return previous[b.length]
+    }
+
+    private fun normalize(text: String) = text.trim().replace(Regex("\\s+"), " ")
+}
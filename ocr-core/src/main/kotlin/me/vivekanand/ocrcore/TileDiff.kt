@@ -0,0 +1,137 @@
+package me.vivekanand.ocrcore
+
+/**
+ * Fingerprint of each tile in a [cols] x [rows] grid over a (usually downscaled) grayscale
+ * frame. Each tile gets a hash of every pixel's luma, quantized by [QUANT_SHIFT] bits. An
+ * edited glyph therefore dirties its tile even when the tile's mean barely moves. Only
+ * signatures of the same [width] x [height] thumbnail can be compared.
+ */
+class TileSignature private constructor(
+    val cols: Int,
+    val rows: Int,
+    val width: Int,
+    val height: Int,
+    private val cells: LongArray,
+) {
+
+    /**
+     * Pixel rects of [imageWidth] x [imageHeight] that changed since [previous], or null when
+     * the grids don't match. Each run of dirty tile rows (with gaps up to [mergeGap] rows)
+     * becomes one rect spanning its dirty columns. Rects are grown by [padTiles] tiles, so a word
+     * cut by a tile edge is still read whole.
+     */
+    fun dirtyRects(
+        previous: TileSignature,
+        imageWidth: Int,
+        imageHeight: Int,
+        mergeGap: Int = 1,
+        padTiles: Int = 1,
+    ): List<PixelRect>? {
+        if (previous.cols != cols || previous.rows != rows || previous.width != width || previous.height != height) {
+            return null
+        }
+        val rects = ArrayList<PixelRect>()
+        var bandStart = -1
+        var bandEnd = -1
+        var minCol = cols
+        var maxCol = -1
+
+        fun flush() {
+            if (bandStart < 0) return
+            rects += PixelRect(
+                (minCol - padTiles).coerceAtLeast(0) * imageWidth / cols,
+                (bandStart - padTiles).coerceAtLeast(0) * imageHeight / rows,
+                (maxCol + 1 + padTiles).coerceAtMost(cols) * imageWidth / cols,
+                (bandEnd + 1 + padTiles).coerceAtMost(rows) * imageHeight / rows,
+            )
+            bandStart = -1
+            minCol = cols
+            maxCol = -1
+        }
+
+        for (row in 0 until rows) {
+            var rowMin = -1
+            var rowMax = -1
+            for (col in 0 until cols) {
+                val i = row * cols + col
+                if (cells[i] != previous.cells[i]) {
+                    if (rowMin < 0) rowMin = col
+                    rowMax = col
+                }
+            }
+            if (rowMin < 0) continue
+            if (bandStart >= 0 && row - bandEnd - 1 > mergeGap) flush()
+            if (bandStart < 0) bandStart = row
+            bandEnd = row
+            minCol = minOf(minCol, rowMin)
+            maxCol = maxOf(maxCol, rowMax)
+        }
+        flush()
+        return rects
+    }
+
+    companion object {
+        /** Low luma bits dropped before hashing, so decoder dither doesn't dirty a tile. */
+        const val QUANT_SHIFT = 3
+
+        private const val FNV_OFFSET = -0x340d631b7bdddcdbL
+        private const val FNV_PRIME = 0x100000001b3L
+
+        /** [luma] holds one byte per pixel, row-major, [width] pixels per row. */
+        fun of(luma: ByteArray, width: Int, height: Int, cols: Int = 16, rows: Int = 32): TileSignature {
+            require(luma.size >= width * height) { "Need $width x $height luma bytes, got ${luma.size}" }
+            val cells = LongArray(cols * rows) { FNV_OFFSET }
+            for (y in 0 until height) {
+                val row = y * rows / height * cols
+                val offset = y * width
+                for (x in 0 until width) {
+                    val cell = row + x * cols / width
+                    val level = (luma[offset + x].toInt() and 0xFF) ushr QUANT_SHIFT
+                    cells[cell] = (cells[cell] xor level.toLong()) * FNV_PRIME
+                }
+            }
+            return TileSignature(cols, rows, width, height, cells)
+        }
+    }
+}
+
+/** Keeps a frame's word layout current by re-reading only the parts that changed. */
+object IncrementalLayout {
+
+    /** Maps words read from a crop at [region], uploaded downscaled by [scale], back to frame pixels. */
+    fun toFrame(words: List<TextBlock>, region: PixelRect, scale: Int = 1): List<TextBlock> = words.map {
+        TextBlock(
+            it.text,
+            region.left + it.left * scale,
+            region.top + it.top * scale,
+            region.left + it.right * scale,
+            region.top + it.bottom * scale,
+        )
+    }
+
+    /**
+     * Widens each of [rects] to cover the [previous] words it cuts into, so the crop holds them
+     * whole instead of returning a clipped half that would replace the old word.
+     */
+    fun grow(rects: List<PixelRect>, previous: List<TextBlock>): List<PixelRect> = rects.map { rect ->
+        previous.filter { intersects(it, rect) }.fold(rect) { r, w ->
+            PixelRect(minOf(r.left, w.left), minOf(r.top, w.top), maxOf(r.right, w.right), maxOf(r.bottom, w.bottom))
+        }
+    }
+
+    /**
+     * [previous] without the words that touch any of [dirty], plus [fresh] (already in frame
+     * pixels), in reading order.
+     */
+    fun merge(previous: List<TextBlock>, dirty: List<PixelRect>, fresh: List<TextBlock>): List<TextBlock> {
+        val kept = previous.filter { word -> dirty.none { intersects(word, it) } }
+        return ReadingOrder.sort(kept + fresh)
+    }
+
+    /** Share of the frame that [rects] cover, 0..1 (overlaps are counted twice). */
+    fun coverage(rects: List<PixelRect>, imageWidth: Int, imageHeight: Int): Double =
+        rects.sumOf { it.width.toLong() * it.height }.toDouble() / (imageWidth.toLong() * imageHeight)
+
+    private fun intersects(word: TextBlock, rect: PixelRect): Boolean =
+        word.left < rect.right && word.right > rect.left && word.top < rect.bottom && word.bottom > rect.top
+}
@@ -0,0 +1,47 @@
+package me.vivekanand.ocrcore
+
+import kotlin.math.ceil
+
+/**
+ * Rate limiter matching a request quota: refills at [ratePerSecond] up to [burst] tokens. A
+ * call with cost n takes n tokens, e.g. one per image in a batched annotate request.
+ */
+class TokenBucket(
+    val ratePerSecond: Double,
+    val burst: Int,
+    private val clockMillis: () -> Long = { System.nanoTime() / 1_000_000 },
+) {
+    private var tokens = burst.toDouble()
+    private var refilledAt = clockMillis()
+
+    init {
+        require(ratePerSecond > 0 && burst > 0) { "rate $ratePerSecond, burst $burst" }
+    }
+
+    /**
+     * Takes [cost] tokens and returns 0, or takes nothing and returns the milliseconds until
+     * they will be there. Costs above [burst] are charged as [burst], or they could never run.
+     */
+    @Synchronized
+    fun tryAcquire(cost: Int = 1): Long {
+        refill()
+        val needed = cost.coerceIn(1, burst).toDouble()
+        if (tokens >= needed) {
+            tokens -= needed
+            return 0
+        }
+        return ceil((needed - tokens) * 1000 / ratePerSecond).toLong().coerceAtLeast(1)
+    }
+
+    @Synchronized
+    fun available(): Double {
+        refill()
+        return tokens
+    }
+
+    private fun refill() {
+        val now = clockMillis()
+        tokens = minOf(burst.toDouble(), tokens + (now - refilledAt) * ratePerSecond / 1000)
+        refilledAt = now
+    }
+}
@@ -0,0 +1,87 @@
+package me.vivekanand.ocrcore
+
+import okio.Buffer
+import okio.BufferedSink
+import okio.BufferedSource
+import okio.ByteString
+import okio.ByteString.Companion.encodeUtf8
+import java.io.IOException
+
+/**
+ * Compact binary layout for word boxes, a fraction of the size of the JSON geometry:
+ *
+ *     "OCRB" | version:u8 | count:varint | word*
+ *     word = dLeft:zigzag | dTop:zigzag | width:varint | height:varint | len:varint | utf8
+ *
+ * Left and top are deltas from the previous word, so words in reading order mostly cost one or
+ * two bytes per coordinate.
+ */
+object WordBoxCodec {
+    private val MAGIC: ByteString = "OCRB".encodeUtf8()
+    private const val VERSION = 1
+
+    fun encode(words: List<TextBlock>): ByteString = Buffer().also { encode(words, it) }.readByteString()
+
+    fun encode(words: List<TextBlock>, sink: BufferedSink) {
+        sink.write(MAGIC).writeByte(VERSION)
+        writeVarint(sink, words.size.toLong())
+        var left = 0
+        var top = 0
+        for (word in words) {
+            writeVarint(sink, zigzag(word.left - left))
+            writeVarint(sink, zigzag(word.top - top))
+            writeVarint(sink, (word.right - word.left).toLong())
+            writeVarint(sink, (word.bottom - word.top).toLong())
+            val text = word.text.encodeUtf8()
+            writeVarint(sink, text.size.toLong())
+            sink.write(text)
+            left = word.left
+            top = word.top
+        }
+    }
+
+    fun decode(source: BufferedSource): List<TextBlock> {
+        if (!source.rangeEquals(0, MAGIC)) throw IOException("Not a word box stream")
+        source.skip(MAGIC.size.toLong())
+        val version = source.readByte().toInt()
+        if (version != VERSION) throw IOException("Unsupported word box version $version")
+        val count = readVarint(source).toInt()
+        val words = ArrayList<TextBlock>(count)
+        var left = 0
+        var top = 0
+        repeat(count) {
+            left += unzigzag(readVarint(source))
+            top += unzigzag(readVarint(source))
+            val width = readVarint(source).toInt()
+            val height = readVarint(source).toInt()
+            val text = source.readUtf8(readVarint(source))
+            words += TextBlock(text, left, top, left + width, top + height)
+        }
+        return words
+    }
+
+    private fun zigzag(v: Int): Long = ((v shl 1) xor (v shr 31)).toLong() and 0xFFFFFFFFL
+
+    private fun unzigzag(v: Long): Int = (v ushr 1).toInt() xor -(v and 1).toInt()
+
+    private fun writeVarint(sink: BufferedSink, value: Long) {
+        var v = value
+        while (v >= 0x80) {
+            sink.writeByte(((v and 0x7F) or 0x80).toInt())
+            v = v ushr 7
+        }
+        sink.writeByte(v.toInt())
+    }
+
+    private fun readVarint(source: BufferedSource): Long {
+        var result = 0L
+        var shift = 0
+        while (true) {
+            val b = source.readByte().toInt() and 0xFF
+            result = result or ((b and 0x7F).toLong() shl shift)
+            if (b < 0x80) return result
+            shift += 7
+            if (shift > 63) throw IOException("Malformed varint")
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package me.vivekanand.ocrcore
+
+import okhttp3.MediaType.Companion.toMediaType
+import okhttp3.RequestBody
+import okhttp3.RequestBody.Companion.toRequestBody
+import okio.blackholeSink
+import okio.buffer
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.ByteArrayOutputStream
+import java.lang.management.ManagementFactory
+import java.util.Base64
+
+/**
+ * Allocation comparison between the old upload path (JPEG bytes -> Base64 String -> JSON String
+ * -> RequestBody bytes) and [AnnotateRequestBody]. The "JPEG" is 6 MB of bytes handed out in
+ * 16 KiB chunks, which is how Bitmap.compress feeds its OutputStream.
+ */
+class AnnotateRequestBodyBenchmarkTest {
+    private val jpegSize = 6 * 1024 * 1024
+    private val chunk = ByteArray(16 * 1024) { it.toByte() }
+    private val payload = ImagePayload { out ->
+        var remaining = jpegSize
+        while (remaining > 0) {
+            val n = minOf(chunk.size, remaining)
+            out.write(chunk, 0, n)
+            remaining -= n
+        }
+    }
+
+    @Test
+    fun streamingBodyAllocatesAFractionOfTheLegacyPath() {
+        // Warm up both paths so class loading and Okio's segment pool don't skew the numbers.
+        repeat(2) { legacyUpload(); streamingUpload() }
+
+        val legacy = allocatedBytes { legacyUpload() }
+        val streaming = allocatedBytes { streamingUpload() }
+        val sizes = "legacy=${legacy / 1024} KiB streaming=${streaming / 1024} KiB (image ${jpegSize / 1024} KiB)"
+
+        assertTrue(sizes, streaming < jpegSize / 4)
+        assertTrue(sizes, streaming * 10 < legacy)
+    }
+
+    private fun legacyUpload() {
+        val stream = ByteArrayOutputStream()
+        payload.writeTo(stream)
+        val base64 = Base64.getEncoder().encodeToString(stream.toByteArray())
+        val json = "{ \"requests\": [ { \"image\": { \"content\": \"" + base64 +
+            "\" }, \"features\": [ { \"type\": \"TEXT_DETECTION\" } ] } ] }"
+        send(json.toRequestBody("application/json".toMediaType()))
+    }
+
+    private fun streamingUpload() {
+        send(AnnotateRequestBody(listOf(payload)))
+    }
+
+    private fun send(body: RequestBody) {
+        blackholeSink().buffer().use { body.writeTo(it) }
+    }
+
+    private fun allocatedBytes(block: () -> Unit): Long {
+        val bean = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+        val thread = Thread.currentThread().id
+        val before = bean.getThreadAllocatedBytes(thread)
+        block()
+        return bean.getThreadAllocatedBytes(thread) - before
+    }
+}
@@ -0,0 +1,50 @@
+package me.vivekanand.ocrcore
+
+import okio.Buffer
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.util.Base64
+import kotlin.random.Random
+
+class AnnotateRequestBodyTest {
+
+    @Test
+    fun base64MatchesReferenceForEveryTailLength() {
+        for (size in 0..64) {
+            val bytes = Random(size).nextBytes(size)
+            val buffer = Buffer()
+            Base64EncodingStream(buffer).apply {
+                // Uneven chunks exercise the carry between writes.
+                var offset = 0
+                while (offset < bytes.size) {
+                    val len = minOf(1 + offset % 5, bytes.size - offset)
+                    write(bytes, offset, len)
+                    offset += len
+                }
+                finish()
+            }
+            assertEquals(Base64.getEncoder().encodeToString(bytes), buffer.readUtf8())
+        }
+    }
+
+    @Test
+    fun writesTheSameDocumentAsTheConcatenatedJson() {
+        val image = Random(7).nextBytes(10_000)
+        val body = AnnotateRequestBody(listOf(ImagePayload { it.write(image) }))
+        val buffer = Buffer()
+        body.writeTo(buffer)
+
+        val base64 = Base64.getEncoder().encodeToString(image)
+        val expected = "{\"requests\":[{\"image\":{\"content\":\"$base64\"}," +
+            "\"features\":[{\"type\":\"TEXT_DETECTION\"}]}]}"
+        assertEquals(expected, buffer.readUtf8())
+    }
+
+    @Test
+    fun bodyCanBeWrittenTwice() {
+        val body = AnnotateRequestBody(listOf(ImagePayload { it.write(byteArrayOf(1, 2, 3)) }))
+        val first = Buffer().also { body.writeTo(it) }.readUtf8()
+        val second = Buffer().also { body.writeTo(it) }.readUtf8()
+        assertEquals(first, second)
+    }
+}
@@ -0,0 +1,89 @@
+package me.vivekanand.ocrcore
+
+import okio.Buffer
+import okio.BufferedSource
+import okio.buffer
+import okio.source
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class AnnotateResponseParserTest {
+
+    private fun fixture(name: String): BufferedSource =
+        javaClass.getResourceAsStream("/annotate/$name")!!.source().buffer()
+
+    @Test
+    fun readsTextFromSingleResponse() {
+        val results = AnnotateResponseParser.parse(fixture("single.json"))
+        assertEquals(listOf(AnnotateResult("Battery 42%\nCharging\n")), results)
+    }
+
+    @Test
+    fun unescapesQuotesBackslashesAndUnicode() {
+        val results = AnnotateResponseParser.parse(fixture("escaped.json"))
+        assertEquals("He said \"run\" \\ then left\nété\n", results.single().text)
+    }
+
+    @Test
+    fun emptyResponseHasNoText() {
+        val result = AnnotateResponseParser.parse(fixture("empty.json")).single()
+        assertNull(result.text)
+        assertNull(result.error)
+    }
+
+    @Test
+    fun topLevelErrorMessage() {
+        assertEquals(
+            "API key not valid. Please pass a valid API key.",
+            AnnotateResponseParser.parseError(fixture("error.json"))
+        )
+    }
+
+    @Test
+    fun batchResponsesKeepTheirOrder() {
+        val results = AnnotateResponseParser.parse(fixture("batch.json"), expectedResponses = 3)
+        assertEquals(
+            listOf(
+                AnnotateResult("first image\n"),
+                AnnotateResult(null, "Bad image data."),
+                AnnotateResult("third image\n"),
+            ),
+            results
+        )
+    }
+
+    @Test
+    fun stopsReadingOnceTheTextIsFound() {
+        // Everything after the first description is garbage: the parser must never reach it.
+        val source = Buffer().writeUtf8(
+            "{\"responses\":[{\"textAnnotations\":[{\"description\":\"hello\"}, this is not json"
+        )
+        assertEquals("hello", AnnotateResponseParser.parse(source).single().text)
+        assertTrue(source.readUtf8().endsWith("this is not json"))
+    }
+
+    @Test
+    fun wordBoxesAreReadWhenAsked() {
+        val result = AnnotateResponseParser.parse(fixture("single.json"), words = true).single()
+        assertEquals("Battery 42%\nCharging\n", result.text)
+        assertEquals(
+            listOf(
+                TextBlock("Battery", 12, 8, 140, 44),
+                TextBlock("42%", 152, 8, 210, 44),
+                TextBlock("Charging", 12, 60, 170, 96),
+            ),
+            result.words
+        )
+    }
+
+    @Test
+    fun omittedZeroCoordinatesDefaultToZero() {
+        val source = Buffer().writeUtf8(
+            "{\"responses\":[{\"textAnnotations\":[{\"description\":\"Hi\"}," +
+                "{\"description\":\"Hi\",\"boundingPoly\":{\"vertices\":[{},{\"x\":30},{\"x\":30,\"y\":12},{\"y\":12}]}}]}]}"
+        )
+        assertEquals(listOf(TextBlock("Hi", 0, 0, 30, 12)), AnnotateResponseParser.parse(source, words = true).single().words)
+    }
+}
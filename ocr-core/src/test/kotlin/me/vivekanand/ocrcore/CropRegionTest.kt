@@ -0,0 +1,47 @@
+package me.vivekanand.ocrcore
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class CropRegionTest {
+
+    @Test
+    fun parsesLabelledFractionalAndAbsoluteRegions() {
+        val regions = CropRegion.parseAll("status:0.0,0.0,1.0,0.08; dialog:120,900,840,400")
+        assertEquals(2, regions.size)
+        assertEquals(CropRegion("status", 0.0, 0.0, 1.0, 0.08, fractional = true), regions[0])
+        assertEquals(CropRegion("dialog", 120.0, 900.0, 840.0, 400.0, fractional = false), regions[1])
+    }
+
+    @Test
+    fun unlabelledRegionsAreNumbered() {
+        val regions = CropRegion.parseAll("0,0,10,10;10,10,5,5")
+        assertEquals(listOf("region1", "region2"), regions.map { it.label })
+    }
+
+    @Test
+    fun blankSpecMeansFullFrame() {
+        assertTrue(CropRegion.parseAll(null).isEmpty())
+        assertTrue(CropRegion.parseAll("  ").isEmpty())
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun rejectsIncompleteRegions() {
+        CropRegion.parseAll("banner:0,0,100")
+    }
+
+    @Test
+    fun resolvesFractionsAgainstTheImageSize() {
+        val region = CropRegion.parseAll("status:0.0,0.0,1.0,0.08").single()
+        assertEquals(PixelRect(0, 0, 1080, 192), region.resolve(1080, 2400))
+    }
+
+    @Test
+    fun clipsToTheImageAndDropsRegionsOutsideIt() {
+        val regions = CropRegion.parseAll("edge:1000,2300,200,200;outside:5000,5000,10,10")
+        assertEquals(PixelRect(1000, 2300, 1080, 2400), regions[0].resolve(1080, 2400))
+        assertNull(regions[1].resolve(1080, 2400))
+    }
+}
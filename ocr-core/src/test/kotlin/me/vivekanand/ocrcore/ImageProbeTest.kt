@@ -0,0 +1,77 @@
+package me.vivekanand.ocrcore
+
+import okio.Buffer
+import okio.ByteString.Companion.decodeHex
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class ImageProbeTest {
+
+    private fun jpeg(exif: String? = null) = Buffer().apply {
+        write("ffd8".decodeHex())
+        write("ffe000104a46494600010100000100010000".decodeHex()) // JFIF APP0
+        if (exif != null) {
+            val tiff = exif.decodeHex()
+            writeShort(0xFFE1)
+            writeShort(2 + 6 + tiff.size)
+            writeUtf8("Exif").writeByte(0).writeByte(0)
+            write(tiff)
+        }
+        write("ffdb00040000".decodeHex()) // stub DQT, skipped by length
+        write("ffc0001108".decodeHex()) // SOF0, 8-bit
+        writeShort(2400) // height
+        writeShort(1080) // width
+        write("03012200021101031101".decodeHex())
+        write("ffda".decodeHex())
+    }
+
+    @Test
+    fun readsJpegDimensionsWithoutDecoding() {
+        assertEquals(ImageHeader(ImageHeader.Format.JPEG, 1080, 2400), ImageProbe.probe(jpeg()))
+    }
+
+    @Test
+    fun readsExifOrientationInBothByteOrders() {
+        // IFD0 with one entry: 0x0112 SHORT count 1 value 6 (rotate 90 CW).
+        val bigEndian = "4d4d002a00000008" + "0001" + "011200030000000100060000" + "00000000"
+        val littleEndian = "49492a0008000000" + "0100" + "120103000100000006000000" + "00000000"
+        assertEquals(ImageHeader(ImageHeader.Format.JPEG, 1080, 2400, 6), ImageProbe.probe(jpeg(bigEndian)))
+        assertEquals(6, ImageProbe.probe(jpeg(littleEndian))?.orientation)
+    }
+
+    @Test
+    fun readsPngHeader() {
+        val png = Buffer()
+            .write("89504e470d0a1a0a".decodeHex())
+            .writeInt(13).writeUtf8("IHDR").writeInt(1440).writeInt(3120)
+        assertEquals(ImageHeader(ImageHeader.Format.PNG, 1440, 3120), ImageProbe.probe(png))
+    }
+
+    @Test
+    fun rejectsOtherFormatsAndTruncatedHeaders() {
+        assertNull(ImageProbe.probe(Buffer().writeUtf8("GIF89a")))
+        assertNull(ImageProbe.probe(Buffer().write("ffd8ffc00011".decodeHex())))
+    }
+
+    @Test
+    fun passThroughOnlyWithinBudgetAndSize() {
+        val screenshot = ImageHeader(ImageHeader.Format.JPEG, 1080, 2400)
+        val budget = 2048 * 1536
+        assertTrue(ImageProbe.canPassThrough(screenshot, 600_000, budget))
+        assertFalse(ImageProbe.canPassThrough(screenshot, ImageProbe.MAX_PASS_THROUGH_BYTES + 1, budget))
+        assertFalse(ImageProbe.canPassThrough(ImageHeader(ImageHeader.Format.JPEG, 4000, 3000), 600_000, budget))
+        assertFalse(ImageProbe.canPassThrough(null, 600_000, budget))
+    }
+
+    @Test
+    fun passThroughRespectsTheUploadBudget() {
+        val screenshot = ImageHeader(ImageHeader.Format.PNG, 1080, 2400)
+        val budget = 2048 * 1536
+        assertFalse(ImageProbe.canPassThrough(screenshot, 600_000, budget, targetBytes = 256 * 1024))
+        assertTrue(ImageProbe.canPassThrough(screenshot, 200_000, budget, targetBytes = 256 * 1024))
+        assertTrue(ImageProbe.canPassThrough(screenshot, 600_000, budget, targetBytes = 0))
+    }
+}
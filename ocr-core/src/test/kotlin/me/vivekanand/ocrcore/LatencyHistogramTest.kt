@@ -0,0 +1,30 @@
+package me.vivekanand.ocrcore
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Test
+
+class LatencyHistogramTest {
+
+    @Test
+    fun nearestRankPercentiles() {
+        val histogram = LatencyHistogram()
+        (1L..100L).shuffled().forEach { histogram.record(it) }
+        assertEquals(50L, histogram.percentile(0.5))
+        assertEquals(95L, histogram.percentile(0.95))
+        assertEquals(100L, histogram.percentile(1.0))
+    }
+
+    @Test
+    fun windowForgetsOldSamples() {
+        val histogram = LatencyHistogram(capacity = 4)
+        listOf(1_000L, 1_000L, 1L, 2L, 3L, 4L).forEach { histogram.record(it) }
+        assertEquals(4, histogram.count())
+        assertEquals(4L, histogram.percentile(1.0))
+    }
+
+    @Test
+    fun emptyWindowHasNoPercentile() {
+        assertNull(LatencyHistogram().percentile(0.5))
+    }
+}
@@ -0,0 +1,64 @@
+package me.vivekanand.ocrcore
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class QualitySearchTest {
+    private val search = QualitySearch(minQuality = 40, maxQuality = 95)
+    private val encoded = ArrayList<Int>()
+
+    // 1 KB per quality step, like a JPEG encoder on a busy screenshot.
+    private val encoder: (Int) -> Int = { quality -> encoded += quality; quality * 1000 }
+
+    @Test
+    fun landsOnTheHighestQualityUnderBudget() {
+        val choice = search.search(72_500, encode = encoder)
+
+        assertEquals(72, choice.quality)
+        assertEquals(72_000, choice.bytes)
+        assertTrue(choice.fits)
+        assertEquals(72, encoded.last())
+        assertTrue("${choice.attempts} attempts", choice.attempts <= 7)
+    }
+
+    @Test
+    fun fittingHintSkipsTheSearch() {
+        val choice = search.search(72_500, hint = 70, encode = encoder)
+
+        assertEquals(70, choice.quality)
+        assertEquals(1, choice.attempts)
+    }
+
+    @Test
+    fun hintWithRoomToSpareSearchesAboveIt() {
+        val choice = search.search(90_500, hint = 50, encode = encoder)
+
+        assertEquals(90, choice.quality)
+        assertEquals(90, encoded.last())
+    }
+
+    @Test
+    fun oversizedHintSearchesBelowIt() {
+        val choice = search.search(60_000, hint = 70, encode = encoder)
+
+        assertEquals(60, choice.quality)
+        assertEquals(60, encoded.last())
+    }
+
+    @Test
+    fun unreachableBudgetFallsBackToMinimumQuality() {
+        val choice = search.search(10_000, encode = encoder)
+
+        assertFalse(choice.fits)
+        assertEquals(40, choice.quality)
+        assertEquals(40_000, choice.bytes)
+        assertEquals(40, encoded.last())
+    }
+
+    @Test
+    fun generousBudgetUsesMaximumQuality() {
+        assertEquals(95, search.search(1_000_000, encode = encoder).quality)
+    }
+}
@@ -0,0 +1,32 @@
+package me.vivekanand.ocrcore
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class ReadingOrderTest {
+
+    @Test
+    fun sortsTopToBottomThenLeftToRight() {
+        val blocks = listOf(
+            TextBlock("second", 10, 100, 90, 130),
+            TextBlock("first", 10, 10, 90, 40),
+        )
+        assertEquals(listOf("first", "second"), ReadingOrder.sort(blocks).map { it.text })
+    }
+
+    @Test
+    fun slightlyMisalignedWordsStayOnTheirLine() {
+        // "42%" sits 3 px higher than "Battery" but is still on the same line.
+        val blocks = listOf(
+            TextBlock("42%", 152, 5, 210, 41),
+            TextBlock("Battery", 12, 8, 140, 44),
+            TextBlock("Charging", 12, 60, 170, 96),
+        )
+        assertEquals("Battery 42%\nCharging", ReadingOrder.toText(blocks))
+    }
+
+    @Test
+    fun emptyInput() {
+        assertEquals("", ReadingOrder.toText(emptyList()))
+    }
+}
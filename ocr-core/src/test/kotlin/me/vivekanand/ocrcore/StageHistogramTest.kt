@@ -0,0 +1,41 @@
+package me.vivekanand.ocrcore
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class StageHistogramTest {
+
+    private fun assertWithin(expected: Long, actual: Long) {
+        assertTrue("expected ~$expected, got $actual", actual >= expected && actual <= expected * 5 / 4)
+    }
+
+    @Test
+    fun percentilesAreWithinBucketResolution() {
+        val histogram = StageHistogram()
+        (1L..10_000L).shuffled().forEach { histogram.record(it) }
+
+        assertEquals(10_000L, histogram.count())
+        assertWithin(5_000, histogram.percentile(0.50))
+        assertWithin(9_500, histogram.percentile(0.95))
+        assertWithin(9_900, histogram.percentile(0.99))
+    }
+
+    @Test
+    fun everyValueFallsInsideItsBucket() {
+        for (value in listOf(0L, 1L, 3L, 4L, 7L, 8L, 9L, 1_000L, 123_456_789L, Long.MAX_VALUE)) {
+            val bucket = StageHistogram.bucketOf(value)
+            assertTrue(value <= StageHistogram.upperBound(bucket))
+            if (bucket > 0) assertTrue(value > StageHistogram.upperBound(bucket - 1))
+        }
+    }
+
+    @Test
+    fun emptyAndReset() {
+        val histogram = StageHistogram()
+        assertEquals(0L, histogram.percentile(0.5))
+        histogram.record(42)
+        histogram.reset()
+        assertEquals(0L, histogram.count())
+    }
+}
@@ -0,0 +1,30 @@
+package me.vivekanand.ocrcore
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class TextAccuracyTest {
+
+    @Test
+    fun lineBreaksDoNotCount() {
+        assertEquals(1.0, TextAccuracy.characterAccuracy("Hello\nworld", "Hello world"), 0.0)
+    }
+
+    @Test
+    fun eachEditCostsOneReferenceCharacter() {
+        assertEquals(0.9, TextAccuracy.characterAccuracy("abcdefghij", "abcdefghiX"), 1e-9)
+        assertEquals(0.9, TextAccuracy.characterAccuracy("abcdefghij", "abcdefghi"), 1e-9)
+    }
+
+    @Test
+    fun accuracyIsFlooredAtZero() {
+        assertEquals(0.0, TextAccuracy.characterAccuracy("abc", ""), 0.0)
+        assertEquals(0.0, TextAccuracy.characterAccuracy("ab", "xyz-long-noise"), 0.0)
+    }
+
+    @Test
+    fun emptyReferenceOnlyMatchesEmptyText() {
+        assertEquals(1.0, TextAccuracy.characterAccuracy("", " "), 0.0)
+        assertEquals(0.0, TextAccuracy.characterAccuracy("", "a"), 0.0)
+    }
+}
@@ -0,0 +1,154 @@
+package me.vivekanand.ocrcore
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class TileDiffTest {
+    private val width = 160
+    private val height = 320
+
+    private fun frame(paint: (x: Int, y: Int) -> Int = { _, _ -> 200 }) =
+        ByteArray(width * height) { i -> paint(i % width, i / width).toByte() }
+
+    @Test
+    fun identicalFramesHaveNoDirtyRects() {
+        val a = TileSignature.of(frame(), width, height)
+        val b = TileSignature.of(frame(), width, height)
+        assertEquals(emptyList<PixelRect>(), b.dirtyRects(a, 1080, 2400))
+    }
+
+    @Test
+    fun changedTileIsPaddedAndScaledToTheFrame() {
+        val before = TileSignature.of(frame(), width, height)
+        // One 10x10 tile (col 3, row 5 of 16x32) turns dark.
+        val after = TileSignature.of(frame { x, y -> if (x in 30..39 && y in 50..59) 0 else 200 }, width, height)
+
+        val rects = after.dirtyRects(before, 1600, 3200)!!
+
+        assertEquals(listOf(PixelRect(200, 400, 500, 700)), rects)
+    }
+
+    @Test
+    fun separateBandsStaySeparate() {
+        val before = TileSignature.of(frame(), width, height)
+        val after = TileSignature.of(frame { _, y -> if (y < 10 || y >= 310) 0 else 200 }, width, height)
+
+        val rects = after.dirtyRects(before, width, height, padTiles = 0)!!
+
+        assertEquals(listOf(PixelRect(0, 0, 160, 10), PixelRect(0, 310, 160, 320)), rects)
+    }
+
+    @Test
+    fun mismatchedGridsAreNotCompared() {
+        val a = TileSignature.of(frame(), width, height, cols = 8, rows = 8)
+        val b = TileSignature.of(frame(), width, height)
+        assertNull(b.dirtyRects(a, width, height))
+    }
+
+    @Test
+    fun singleDigitEditInAClockIsFound() {
+        // A 1080x2400 screenshot read at sample size 4, as IncrementalOcr does: 270x600.
+        val w = 270
+        val h = 600
+        // 40 px tall seven-segment digits with 3 px strokes, box-averaged down by 4.
+        val before = screenshot(w, h, "12:00")
+        val after = screenshot(w, h, "12:01")
+        // The last digit loses four 3 px strokes: a few dozen thumbnail pixels in one column of tiles.
+        val rects = TileSignature.of(after, w, h).dirtyRects(TileSignature.of(before, w, h), 1080, 2400, padTiles = 0)!!
+
+        val digit = PixelRect(900, 40, 924, 80)
+        assertEquals(1, rects.size)
+        assertTrue("$rects", rects.single().let {
+            it.left <= digit.left && it.right >= digit.right && it.top <= digit.top && it.bottom >= digit.bottom
+        })
+        assertTrue(IncrementalLayout.coverage(rects, 1080, 2400) < 0.01)
+    }
+
+    @Test
+    fun identicalTextRedrawnIsClean() {
+        val a = TileSignature.of(screenshot(270, 600, "12:00"), 270, 600)
+        val b = TileSignature.of(screenshot(270, 600, "12:00"), 270, 600)
+        assertEquals(emptyList<PixelRect>(), b.dirtyRects(a, 1080, 2400))
+    }
+
+    /** Dark seven-segment [text] on a light status bar at full size, then box-averaged to [w] x [h]. */
+    private fun screenshot(w: Int, h: Int, text: String): ByteArray {
+        val scale = 4
+        val fullW = w * scale
+        val full = ByteArray(fullW * h * scale) { 230.toByte() }
+        fun bar(left: Int, top: Int, right: Int, bottom: Int) {
+            for (y in top until bottom) for (x in left until right) full[y * fullW + x] = 30
+        }
+        var left = 780
+        for (c in text) {
+            // Segments a..g of a 24x40 digit, 3 px strokes, top edge at y = 40.
+            val segments = DIGITS[c]
+            if (segments == null) {
+                bar(left + 4, 50, left + 7, 53)
+                bar(left + 4, 66, left + 7, 69)
+                left += 12
+                continue
+            }
+            val t = 40
+            if ('a' in segments) bar(left, t, left + 24, t + 3)
+            if ('b' in segments) bar(left + 21, t, left + 24, t + 20)
+            if ('c' in segments) bar(left + 21, t + 20, left + 24, t + 40)
+            if ('d' in segments) bar(left, t + 37, left + 24, t + 40)
+            if ('e' in segments) bar(left, t + 20, left + 3, t + 40)
+            if ('f' in segments) bar(left, t, left + 3, t + 20)
+            if ('g' in segments) bar(left, t + 18, left + 24, t + 21)
+            left += 36
+        }
+        return ByteArray(w * h) { i ->
+            val x = i % w * scale
+            val y = i / w * scale
+            var sum = 0
+            for (dy in 0 until scale) for (dx in 0 until scale) sum += full[(y + dy) * fullW + x + dx].toInt() and 0xFF
+            (sum / (scale * scale)).toByte()
+        }
+    }
+
+    @Test
+    fun smallChangeCoversAFractionOfTheFrame() {
+        val before = TileSignature.of(frame(), width, height)
+        // A clock-sized change in the status bar.
+        val after = TileSignature.of(frame { x, y -> if (x in 130..150 && y in 2..8) 0 else 200 }, width, height)
+
+        val rects = after.dirtyRects(before, 1080, 2400)!!
+
+        assertTrue(IncrementalLayout.coverage(rects, 1080, 2400) < 0.05)
+    }
+
+    @Test
+    fun mergeReplacesOnlyWordsInTheDirtyRegion() {
+        val previous = listOf(
+            TextBlock("12:00", 900, 10, 1000, 40),
+            TextBlock("Hello", 100, 500, 200, 540),
+            TextBlock("world", 220, 500, 320, 540),
+        )
+        val dirty = listOf(PixelRect(850, 0, 1080, 60))
+        val fresh = IncrementalLayout.toFrame(listOf(TextBlock("12:01", 50, 10, 150, 40)), dirty[0])
+
+        val merged = IncrementalLayout.merge(previous, dirty, fresh)
+
+        assertEquals("12:01\nHello world", ReadingOrder.toText(merged))
+    }
+
+    @Test
+    fun toFrameUndoesDownscaling() {
+        val words = IncrementalLayout.toFrame(listOf(TextBlock("a", 10, 20, 30, 40)), PixelRect(100, 200, 300, 400), scale = 2)
+        assertEquals(TextBlock("a", 120, 240, 160, 280), words.single())
+    }
+
+    @Test
+    fun growCoversCutWords() {
+        val grown = IncrementalLayout.grow(listOf(PixelRect(0, 0, 100, 100)), listOf(TextBlock("long", 80, 40, 160, 60)))
+        assertEquals(listOf(PixelRect(0, 0, 160, 100)), grown)
+    }
+
+    private companion object {
+        val DIGITS = mapOf('0' to "abcdef", '1' to "bc", '2' to "abdeg")
+    }
+}
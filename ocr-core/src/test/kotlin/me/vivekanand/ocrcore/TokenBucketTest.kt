@@ -0,0 +1,39 @@
+package me.vivekanand.ocrcore
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class TokenBucketTest {
+    private var now = 0L
+    private val bucket = TokenBucket(ratePerSecond = 10.0, burst = 3) { now }
+
+    @Test
+    fun burstIsAvailableUpFront() {
+        repeat(3) { assertEquals(0, bucket.tryAcquire()) }
+        assertEquals(100, bucket.tryAcquire())
+    }
+
+    @Test
+    fun refillsAtTheConfiguredRate() {
+        repeat(3) { bucket.tryAcquire() }
+        now += 250
+        assertEquals(0, bucket.tryAcquire())
+        assertEquals(0, bucket.tryAcquire())
+        assertEquals(50, bucket.tryAcquire())
+    }
+
+    @Test
+    fun neverHoldsMoreThanTheBurst() {
+        now += 60_000
+        assertEquals(3.0, bucket.available(), 0.0)
+    }
+
+    @Test
+    fun costIsChargedPerUnitAndCappedAtTheBurst() {
+        assertEquals(0, bucket.tryAcquire(2))
+        assertEquals(100, bucket.tryAcquire(2))
+        now += 1_000
+        assertEquals(0, bucket.tryAcquire(16))
+        assertEquals(0.0, bucket.available(), 0.0)
+    }
+}
@@ -0,0 +1,46 @@
+package me.vivekanand.ocrcore
+
+import okio.Buffer
+import okio.ByteString.Companion.encodeUtf8
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.IOException
+
+class WordBoxCodecTest {
+    private val words = listOf(
+        TextBlock("Battery", 12, 8, 140, 44),
+        TextBlock("42%", 152, 8, 210, 44),
+        // Next line starts back at the left margin: a negative delta.
+        TextBlock("Charging", 12, 60, 170, 96),
+        TextBlock("été", 0, 0, 1, 1),
+    )
+
+    @Test
+    fun roundTrips() {
+        val encoded = WordBoxCodec.encode(words)
+        assertEquals(words, WordBoxCodec.decode(Buffer().write(encoded)))
+    }
+
+    @Test
+    fun emptyList() {
+        assertEquals(emptyList<TextBlock>(), WordBoxCodec.decode(Buffer().write(WordBoxCodec.encode(emptyList()))))
+    }
+
+    @Test
+    fun muchSmallerThanTheJsonGeometry() {
+        val page = List(2_000) { i -> TextBlock("word$i", 12 + (i % 8) * 130, 8 + (i / 8) * 48, 110 + (i % 8) * 130, 44 + (i / 8) * 48) }
+        val json = page.joinToString(",") { w ->
+            "{\"description\":\"${w.text}\",\"boundingPoly\":{\"vertices\":[{\"x\":${w.left},\"y\":${w.top}}," +
+                "{\"x\":${w.right},\"y\":${w.top}},{\"x\":${w.right},\"y\":${w.bottom}},{\"x\":${w.left},\"y\":${w.bottom}}]}}"
+        }
+        val binary = WordBoxCodec.encode(page)
+        assertTrue("binary ${binary.size} vs json ${json.length}", binary.size * 5 < json.length)
+        assertEquals(page, WordBoxCodec.decode(Buffer().write(binary)))
+    }
+
+    @Test(expected = IOException::class)
+    fun rejectsForeignData() {
+        WordBoxCodec.decode(Buffer().write("{\"words\":[]}".encodeUtf8()))
+    }
+}
@@ -0,0 +1,149 @@
+package me.vivekanand.ocrcore
+
+import com.squareup.moshi.JsonReader
+import java.io.Closeable
+import java.io.File
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.math.exp
+import kotlin.random.Random
+import mockwebserver3.Dispatcher
+import mockwebserver3.MockResponse
+import mockwebserver3.MockWebServer
+import mockwebserver3.RecordedRequest
+import okio.Buffer
+
+/** Server-side think time per request, in milliseconds. */
+fun interface LatencyModel {
+    fun nextMillis(random: Random): Long
+
+    companion object {
+        fun fixed(millis: Long) = LatencyModel { millis }
+
+        fun uniform(minMillis: Long, maxMillis: Long) = LatencyModel { it.nextLong(minMillis, maxMillis + 1) }
+
+        /** Long right tail like the real API: most calls near [medianMillis], a few far above. */
+        fun logNormal(medianMillis: Long, sigma: Double = 0.5) = LatencyModel { random ->
+            // Box-Muller for a standard normal sample.
+            val z = Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble())
+            (medianMillis * exp(sigma * z)).toLong()
+        }
+    }
+}
+
+/**
+ * Local stand-in for images:annotate. Each request gets one recorded response per image it
+ * carries, after a delay drawn from [latency]. A fraction [errorRate] of requests fail with
+ * [errorCode] and a Vision-style error body instead.
+ *
+ * Point a client at [endpoint]. Nothing leaves the machine and no quota is used.
+ */
+class FakeVisionServer(
+    private val responses: List<String> = listOf(RecordedResponses.words(40)),
+    private val latency: LatencyModel = LatencyModel.fixed(0),
+    private val errorRate: Double = 0.0,
+    private val errorCode: Int = 503,
+    seed: Long = 1,
+) : Closeable {
+    private val server = MockWebServer()
+    private val random = Random(seed)
+    private val served = AtomicInteger()
+    private val failed = AtomicInteger()
+
+    val requestCount: Int get() = served.get()
+    val errorCount: Int get() = failed.get()
+    val endpoint: String get() = server.url("/v1/images:annotate").toString()
+
+    init {
+        require(responses.isNotEmpty()) { "No responses to replay" }
+        require(errorRate in 0.0..1.0) { "errorRate $errorRate" }
+    }
+
+    fun start(): FakeVisionServer {
+        server.dispatcher = object : Dispatcher() {
+            override fun dispatch(request: RecordedRequest): MockResponse = respond(request)
+        }
+        server.start()
+        return this
+    }
+
+    override fun close() {
+        server.close()
+    }
+
+    private fun respond(request: RecordedRequest): MockResponse {
+        val n = served.getAndIncrement()
+        // Random isn't thread-safe; the dispatcher runs on one thread per connection.
+        val (delay, fail) = synchronized(random) { latency.nextMillis(random) to (random.nextDouble() < errorRate) }
+        val builder = MockResponse.Builder()
+            .headersDelay(delay, TimeUnit.MILLISECONDS)
+            .setHeader("Content-Type", "application/json; charset=UTF-8")
+        if (fail) {
+            failed.incrementAndGet()
+            return builder.code(errorCode)
+                .body("{\"error\":{\"code\":$errorCode,\"message\":\"Stand-in failure\",\"status\":\"UNAVAILABLE\"}}")
+                .build()
+        }
+        val images = imagesIn(request).coerceAtLeast(1)
+        val body = StringBuilder("{\"responses\":[")
+        repeat(images) { i ->
+            if (i > 0) body.append(',')
+            body.append(responses[(n + i) % responses.size])
+        }
+        return builder.body(body.append("]}").toString()).build()
+    }
+
+    private fun imagesIn(request: RecordedRequest): Int {
+        val body = request.body ?: return 0
+        val reader = JsonReader.of(Buffer().write(body))
+        var count = 0
+        reader.beginObject()
+        while (reader.hasNext()) {
+            if (reader.nextName() == "requests") {
+                reader.beginArray()
+                while (reader.hasNext()) {
+                    reader.skipValue()
+                    count++
+                }
+                reader.endArray()
+            } else {
+                reader.skipValue()
+            }
+        }
+        return count
+    }
+}
+
+/** Response objects (one element of `responses`) to replay from [FakeVisionServer]. */
+object RecordedResponses {
+
+    /** A TEXT_DETECTION response with [count] words, shaped like the real API's. */
+    fun words(count: Int): String {
+        val text = (0 until count).joinToString(" ") { word(it) }
+        val sb = StringBuilder("{\"textAnnotations\":[{\"locale\":\"en\",\"description\":\"").append(text).append("\",")
+        poly(sb, 0, 0, 1080, 2400)
+        sb.append('}')
+        repeat(count) { i ->
+            val x = (i % 8) * 130
+            val y = (i / 8) * 48
+            sb.append(",{\"description\":\"").append(word(i)).append("\",")
+            poly(sb, x, y, x + 110, y + 36)
+            sb.append('}')
+        }
+        return sb.append("],\"fullTextAnnotation\":{\"text\":\"").append(text).append("\"}}").toString()
+    }
+
+    /** Responses saved from real traffic, one JSON response object per `*.json` file. */
+    fun load(dir: File): List<String> =
+        dir.listFiles { f -> f.name.endsWith(".json") }.orEmpty().sortedBy { it.name }.map { it.readText().trim() }
+
+    private fun word(i: Int) = "word$i"
+
+    private fun poly(sb: StringBuilder, left: Int, top: Int, right: Int, bottom: Int) {
+        sb.append("\"boundingPoly\":{\"vertices\":[")
+            .append("{\"x\":").append(left).append(",\"y\":").append(top).append("},")
+            .append("{\"x\":").append(right).append(",\"y\":").append(top).append("},")
+            .append("{\"x\":").append(right).append(",\"y\":").append(bottom).append("},")
+            .append("{\"x\":").append(left).append(",\"y\":").append(bottom).append("}]}")
+    }
+}
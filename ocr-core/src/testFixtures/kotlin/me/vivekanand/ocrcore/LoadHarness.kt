@@ -0,0 +1,79 @@
+package me.vivekanand.ocrcore
+
+import java.lang.management.ManagementFactory
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Open-loop load generator. Calls [call] at a fixed [ratePerSecond] for [requests] calls on up
+ * to [maxConcurrency] threads. Latency is measured from each call's scheduled start, not its
+ * actual start, so a stalled client shows up as latency rather than as a lower send rate.
+ *
+ * Allocation is what the calling thread allocated. Bytes allocated on OkHttp's own threads
+ * (the HTTP/2 reader) are not included.
+ */
+class LoadHarness(
+    private val ratePerSecond: Double,
+    private val requests: Int,
+    private val maxConcurrency: Int = 16,
+) {
+    class Report(
+        val requests: Int,
+        val succeeded: Int,
+        val failed: Int,
+        val elapsedMillis: Long,
+        val latency: LatencyHistogram,
+        val allocatedBytesPerRequest: Long,
+    ) {
+        val throughputPerSecond: Double get() = if (elapsedMillis == 0L) 0.0 else succeeded * 1000.0 / elapsedMillis
+
+        fun percentile(p: Double): Long = latency.percentile(p) ?: 0
+
+        override fun toString(): String =
+            ("%d requests: %d ok, %d failed in %d ms, %.1f req/s, " +
+                "p50 %d ms, p95 %d ms, p99 %d ms, max %d ms, %d KiB allocated/request").format(
+                requests, succeeded, failed, elapsedMillis, throughputPerSecond,
+                percentile(0.50), percentile(0.95), percentile(0.99), percentile(1.0),
+                allocatedBytesPerRequest / 1024,
+            )
+    }
+
+    fun run(call: () -> Unit): Report {
+        require(ratePerSecond > 0 && requests > 0)
+        val threads = ManagementFactory.getThreadMXBean() as com.sun.management.ThreadMXBean
+        val pool = Executors.newFixedThreadPool(maxConcurrency)
+        val latency = LatencyHistogram(requests)
+        val succeeded = AtomicInteger()
+        val failed = AtomicInteger()
+        val allocated = AtomicLong()
+        val intervalNanos = (1_000_000_000 / ratePerSecond).toLong()
+
+        val started = System.nanoTime()
+        try {
+            repeat(requests) { i ->
+                val scheduled = started + i * intervalNanos
+                val wait = scheduled - System.nanoTime()
+                if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait)
+                pool.execute {
+                    val thread = Thread.currentThread().id
+                    val before = threads.getThreadAllocatedBytes(thread)
+                    try {
+                        call()
+                        succeeded.incrementAndGet()
+                    } catch (e: Exception) {
+                        failed.incrementAndGet()
+                    }
+                    allocated.addAndGet(threads.getThreadAllocatedBytes(thread) - before)
+                    latency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - scheduled))
+                }
+            }
+        } finally {
+            pool.shutdown()
+            pool.awaitTermination(5, TimeUnit.MINUTES)
+        }
+        val elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)
+        return Report(requests, succeeded.get(), failed.get(), elapsedMillis, latency, allocated.get() / requests)
+    }
+}